@@ -0,0 +1,185 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Replays a trace of keys against LRU, CLOCK and W-TinyLFU caches of the
+ * given sizes and prints the hit ratio of each. A key that misses is added,
+ * so every policy sees exactly the same requests.
+ *
+ * Run with {@code java CacheSimulator <trace file> <size>...}, where the
+ * trace has one key per line, or with {@code java CacheSimulator synthetic
+ * <size>...} to replay a generated trace of skewed requests broken up by
+ * long scans of keys that are never seen again.
+ *
+ * @version 1.0
+ */
+public class CacheSimulator {
+    private static final int SYNTHETIC_LENGTH = 2000000;
+    private static final int SYNTHETIC_KEYS = 100000;
+
+    /**
+     * Replays the trace named by the first argument at every size given by
+     * the rest.
+     *
+     * @param args trace file or "synthetic", then one or more cache sizes
+     * @throws IOException if the trace file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println(
+                    "usage: java CacheSimulator <trace file|synthetic> "
+                    + "<size>...");
+            return;
+        }
+        String[] trace = args[0].equals("synthetic") ? synthetic()
+                : read(args[0]);
+        System.out.println(trace.length + " requests");
+        System.out.println("size\tLRU\tCLOCK\tW-TinyLFU");
+        for (int i = 1; i < args.length; i++) {
+            int size = Integer.parseInt(args[i]);
+            double lru = replay(new LruCache<String>(size)::request, trace);
+            double clock = replay(
+                    requester(new ClockCache<String, String>(size)), trace);
+            double tinyLfu = replay(
+                    requester(new TinyLfuCache<String, String>(size)), trace);
+            System.out.println(String.format("%d\t%.4f\t%.4f\t%.4f", size,
+                    lru, clock, tinyLfu));
+        }
+    }
+
+    /**
+     * @param cache
+     *            requests a key from an empty cache, returning whether it hit
+     * @param trace
+     *            keys in the order they are requested
+     * @return fraction of the requests that hit
+     */
+    private static double replay(Predicate<String> cache, String[] trace) {
+        long hits = 0;
+        for (String key : trace) {
+            if (cache.test(key)) {
+                hits++;
+            }
+        }
+        return trace.length == 0 ? 0 : (double) hits / trace.length;
+    }
+
+    /**
+     * @param cache
+     *            cache to request keys from
+     * @return requests a key, reading it on a hit and adding it on a miss,
+     *         and returns whether it hit
+     */
+    private static Predicate<String> requester(
+            final HashMapInterface<String, String> cache) {
+        return key -> {
+            if (cache.contains(key)) {
+                cache.get(key);
+                return true;
+            }
+            cache.add(key, key);
+            return false;
+        };
+    }
+
+    /**
+     * @param file
+     *            path of a trace with one key per line
+     * @throws IOException if the file cannot be read
+     * @return the non-empty lines of the file
+     */
+    private static String[] read(String file) throws IOException {
+        List<String> keys = new ArrayList<String>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file),
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    keys.add(line);
+                }
+            }
+        }
+        return keys.toArray(new String[keys.size()]);
+    }
+
+    /**
+     * Builds a trace of Zipf distributed requests with a scan of new keys
+     * every so often.
+     *
+     * @return the generated trace
+     */
+    private static String[] synthetic() {
+        Random random = new Random(42);
+        double[] cumulative = new double[SYNTHETIC_KEYS];
+        double total = 0;
+        for (int i = 0; i < SYNTHETIC_KEYS; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        String[] trace = new String[SYNTHETIC_LENGTH];
+        int scanned = 0;
+        int i = 0;
+        while (i < trace.length) {
+            if (random.nextInt(10000) == 0) {
+                int scan = Math.min(5000, trace.length - i);
+                for (int j = 0; j < scan; j++) {
+                    trace[i++] = "scan-" + scanned++;
+                }
+            } else {
+                double target = random.nextDouble() * total;
+                int key = Arrays.binarySearch(cumulative, target);
+                trace[i++] = "key-" + (key < 0 ? -key - 1 : key);
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * The LRU baseline, built on LinkedHashMap in access order. It only does
+     * what the simulator needs, so it is not a HashMapInterface.
+     */
+    private static class LruCache<K> {
+        private final LinkedHashMap<K, K> map;
+
+        /**
+         * @param maxEntries
+         *            most entries the cache will hold
+         */
+        LruCache(final int maxEntries) {
+            map = new LinkedHashMap<K, K>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, K> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        /**
+         * Requests a key, moving it to the most recently used end on a hit
+         * and adding it, evicting the least recently used key if full, on a
+         * miss.
+         *
+         * @param key
+         *            key to request
+         * @return whether the key was in the cache
+         */
+        boolean request(K key) {
+            if (map.get(key) != null) {
+                return true;
+            }
+            map.put(key, key);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,494 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A size bounded cache that evicts with the CLOCK policy. Entries live in
+ * dense parallel arrays indexed by slot, with one reference bit per slot, and
+ * an open-addressing index of slot numbers finds them by key. A hit only sets
+ * the reference bit, so it allocates nothing and touches no list. When the
+ * cache is full, a hand sweeps the slots in order, clearing set reference
+ * bits, and evicts the first entry whose bit was already clear.
+ *
+ * The cache is bounded either by number of entries or by total weight, as
+ * given by a weigher. Hits, misses and evictions are counted as it runs.
+ *
+ * @version 1.0
+ */
+public class ClockCache<K, V> implements HashMapInterface<K, V> {
+    // index value of a slot whose entry was removed
+    private static final int REMOVED = -1;
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+
+    // entry storage, indexed by slot
+    private K[] keys;
+    private V[] values;
+    private int[] hashes;
+    private int[] weights;
+    private boolean[] referenced;
+    // slots below used have held an entry at some point
+    private int used;
+    // slots freed by remove or eviction, reused before used grows
+    private int[] free;
+    private int freeCount;
+    private int hand;
+
+    // open-addressing index holding slot + 1, 0 for empty
+    private int[] index;
+    private int indexRemoved;
+
+    private int size;
+    private long weight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache holding at most maxEntries entries.
+     *
+     * @param maxEntries most entries the cache will hold
+     * @throws IllegalArgumentException if maxEntries is not positive
+     */
+    public ClockCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Create a cache whose entries weigh at most maxWeight in total.
+     *
+     * @param maxWeight most total weight the cache will hold
+     * @param weigher gives the weight of an entry, never negative
+     * @throws IllegalArgumentException if maxWeight is negative or weigher
+     * is null
+     */
+    public ClockCache(long maxWeight,
+            ToIntBiFunction<? super K, ? super V> weigher) {
+        this(Integer.MAX_VALUE - 8, maxWeight, weigher);
+        if (weigher == null) {
+            throw new IllegalArgumentException("Weigher cannot be null");
+        }
+    }
+
+    /**
+     * @param maxEntries
+     *            most entries the cache will hold
+     * @param maxWeight
+     *            most total weight the cache will hold
+     * @param weigher
+     *            gives the weight of an entry, null to weigh nothing
+     */
+    private ClockCache(int maxEntries, long maxWeight,
+            ToIntBiFunction<? super K, ? super V> weigher) {
+        if (maxEntries <= 0 || maxWeight < 0) {
+            throw new IllegalArgumentException(
+                    "Cache bound must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        clear();
+    }
+
+    /**
+     * Adds the key-value pair, evicting entries first if the cache would go
+     * over its bound. Replacing a value marks the entry as referenced.
+     *
+     * @param key key to add into the cache
+     * @param value value to add into the cache
+     * @throws IllegalArgumentException if key or value is null, or the
+     * entry alone weighs more than the cache can hold
+     * @return the old value associated with key, null if there was none
+     */
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        int entryWeight = weigh(key, value);
+        int hash = key.hashCode();
+        int pos = find(key, hash);
+        if (pos != -1) {
+            int slot = index[pos] - 1;
+            V old = values[slot];
+            values[slot] = value;
+            referenced[slot] = true;
+            if (weigher != null) {
+                weight += entryWeight - weights[slot];
+                weights[slot] = entryWeight;
+                while (weight > maxWeight) {
+                    evict();
+                }
+            }
+            return old;
+        }
+        while (size >= maxEntries || weight + entryWeight > maxWeight) {
+            evict();
+        }
+        if (size + indexRemoved + 1 > index.length * MAX_LOAD_FACTOR) {
+            reindex(index.length);
+        }
+        int slot = allocate();
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+        referenced[slot] = false;
+        if (weigher != null) {
+            weights[slot] = entryWeight;
+        }
+        weight += entryWeight;
+        size++;
+        place(slot);
+        return null;
+    }
+
+    @Override
+    public V remove(K key) {
+        int pos = find(key);
+        if (pos == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        int slot = index[pos] - 1;
+        V old = values[slot];
+        index[pos] = REMOVED;
+        indexRemoved++;
+        release(slot);
+        return old;
+    }
+
+    /**
+     * Gets the value associated with key and marks the entry as referenced.
+     * Counts a hit or a miss.
+     *
+     * @param key key to search for in the cache
+     * @throws IllegalArgumentException if key is null
+     * @throws java.util.NoSuchElementException if key is not in the cache
+     * @return the value associated with key
+     */
+    @Override
+    public V get(K key) {
+        int pos = find(key);
+        if (pos == -1) {
+            misses++;
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        hits++;
+        int slot = index[pos] - 1;
+        referenced[slot] = true;
+        return values[slot];
+    }
+
+    /**
+     * Gets the value associated with key and marks the entry as referenced,
+     * without throwing on a miss. Counts a hit or a miss.
+     *
+     * @param key key to search for in the cache
+     * @param defaultValue value to return if key is not in the cache
+     * @throws IllegalArgumentException if key is null
+     * @return the value associated with key, defaultValue if there is none
+     */
+    public V getOrDefault(K key, V defaultValue) {
+        int pos = find(key);
+        if (pos == -1) {
+            misses++;
+            return defaultValue;
+        }
+        hits++;
+        int slot = index[pos] - 1;
+        referenced[slot] = true;
+        return values[slot];
+    }
+
+    /**
+     * Checks whether key is cached. Does not count as a hit or a miss and
+     * does not mark the entry as referenced.
+     *
+     * @param key key to search for in the cache
+     * @throws IllegalArgumentException if key is null
+     * @return whether key is in the cache
+     */
+    @Override
+    public boolean contains(K key) {
+        return find(key) != -1;
+    }
+
+    /**
+     * Empties the cache. The hit, miss and eviction counts are kept.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        int length = Math.min(STARTING_SIZE, maxEntries);
+        keys = (K[]) new Object[length];
+        values = (V[]) new Object[length];
+        hashes = new int[length];
+        weights = weigher == null ? null : new int[length];
+        referenced = new boolean[length];
+        free = new int[length];
+        used = 0;
+        freeCount = 0;
+        hand = 0;
+        index = new int[indexLengthFor(length)];
+        indexRemoved = 0;
+        size = 0;
+        weight = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return total weight of the cached entries, 0 if the cache is bounded
+     * by number of entries
+     */
+    public long weight() {
+        return weigher == null ? 0 : weight;
+    }
+
+    /**
+     * @return number of get calls that found their key
+     */
+    public long hitCount() {
+        return hits;
+    }
+
+    /**
+     * @return number of get calls that did not find their key
+     */
+    public long missCount() {
+        return misses;
+    }
+
+    /**
+     * @return number of entries evicted to stay within the bound
+     */
+    public long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns a copy of the cached entries in slot order. Changing the
+     * entries does not change the cache.
+     *
+     * @return array of the cached entries
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public MapEntry<K, V>[] toArray() {
+        MapEntry<K, V>[] entries = new MapEntry[size];
+        int count = 0;
+        for (int i = 0; i < used; i++) {
+            if (keys[i] != null) {
+                entries[count++] = new MapEntry<K, V>(keys[i], values[i],
+                        hashes[i]);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        HashSet<K> set = new HashSet<K>();
+        for (int i = 0; i < used; i++) {
+            if (keys[i] != null) {
+                set.add(keys[i]);
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public List<V> values() {
+        LinkedList<V> vals = new LinkedList<V>();
+        for (int i = 0; i < used; i++) {
+            if (keys[i] != null) {
+                vals.add(values[i]);
+            }
+        }
+        return vals;
+    }
+
+    /**
+     * @param key
+     *            key of the entry
+     * @param value
+     *            value of the entry
+     * @throws IllegalArgumentException if the weight is negative or more
+     * than the cache can hold
+     * @return weight of the entry, 0 if the cache has no weigher
+     */
+    private int weigh(K key, V value) {
+        if (weigher == null) {
+            return 0;
+        }
+        int entryWeight = weigher.applyAsInt(key, value);
+        if (entryWeight < 0 || entryWeight > maxWeight) {
+            throw new IllegalArgumentException("Entry weight " + entryWeight
+                    + " does not fit in the cache");
+        }
+        return entryWeight;
+    }
+
+    /**
+     * Moves the hand until it finds an entry that has not been referenced
+     * since the hand last passed it, clearing reference bits on the way,
+     * and evicts that entry.
+     */
+    private void evict() {
+        while (true) {
+            if (hand >= used) {
+                hand = 0;
+            }
+            int slot = hand++;
+            if (keys[slot] == null) {
+                continue;
+            }
+            if (referenced[slot]) {
+                referenced[slot] = false;
+                continue;
+            }
+            int mask = index.length - 1;
+            int pos = PowerOfTwoHashMap.mix(hashes[slot]) & mask;
+            for (int step = 1; index[pos] != slot + 1; step++) {
+                pos = (pos + step) & mask;
+            }
+            index[pos] = REMOVED;
+            indexRemoved++;
+            release(slot);
+            evictions++;
+            return;
+        }
+    }
+
+    /**
+     * @return a free slot, growing the storage if every slot is taken
+     */
+    private int allocate() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        if (used == keys.length) {
+            grow();
+        }
+        return used++;
+    }
+
+    /**
+     * empties slot and puts it on the free list
+     *
+     * @param slot
+     *            slot to free
+     */
+    private void release(int slot) {
+        keys[slot] = null;
+        values[slot] = null;
+        if (weigher != null) {
+            weight -= weights[slot];
+        }
+        free[freeCount++] = slot;
+        size--;
+    }
+
+    /**
+     * Doubles the entry storage, up to maxEntries, and the index with it.
+     */
+    private void grow() {
+        int length = (int) Math.min((long) keys.length * 2, maxEntries);
+        keys = Arrays.copyOf(keys, length);
+        values = Arrays.copyOf(values, length);
+        hashes = Arrays.copyOf(hashes, length);
+        if (weigher != null) {
+            weights = Arrays.copyOf(weights, length);
+        }
+        referenced = Arrays.copyOf(referenced, length);
+        free = Arrays.copyOf(free, length);
+        reindex(Math.max(index.length, indexLengthFor(length)));
+    }
+
+    /**
+     * @param slots
+     *            number of entry slots the index has to hold
+     * @return a power of two index length that holds them under the max load
+     * factor
+     */
+    private static int indexLengthFor(int slots) {
+        long needed = (long) (slots / MAX_LOAD_FACTOR) + 2;
+        return (int) Math.min(Long.highestOneBit(needed - 1) << 1, 1 << 30);
+    }
+
+    /**
+     * rebuilds the index from the live slots, dropping removed markers
+     *
+     * @param length
+     *            length of the new index, a power of two
+     */
+    private void reindex(int length) {
+        index = new int[length];
+        indexRemoved = 0;
+        for (int i = 0; i < used; i++) {
+            if (keys[i] != null) {
+                place(i);
+            }
+        }
+    }
+
+    /**
+     * puts slot into the first free position of its probe sequence
+     *
+     * @param slot
+     *            slot holding the entry to index
+     */
+    private void place(int slot) {
+        int mask = index.length - 1;
+        int pos = PowerOfTwoHashMap.mix(hashes[slot]) & mask;
+        for (int step = 1; index[pos] > 0; step++) {
+            pos = (pos + step) & mask;
+        }
+        if (index[pos] == REMOVED) {
+            indexRemoved--;
+        }
+        index[pos] = slot + 1;
+    }
+
+    /**
+     * @param key
+     *            key to look for
+     * @throws IllegalArgumentException if key is null
+     * @return position of key in the index, -1 if it is not cached
+     */
+    private int find(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        return find(key, key.hashCode());
+    }
+
+    /**
+     * @param key
+     *            key to look for
+     * @param hash
+     *            hash code of key
+     * @return position of key in the index, -1 if it is not cached
+     */
+    private int find(K key, int hash) {
+        int mask = index.length - 1;
+        int pos = PowerOfTwoHashMap.mix(hash) & mask;
+        for (int step = 1; index[pos] != 0; step++) {
+            int slot = index[pos] - 1;
+            if (slot >= 0 && hashes[slot] == hash && keys[slot].equals(key)) {
+                return pos;
+            }
+            pos = (pos + step) & mask;
+        }
+        return -1;
+    }
+}
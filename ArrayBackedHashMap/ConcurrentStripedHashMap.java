@@ -0,0 +1,386 @@
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread safe hash map. Keys are spread over a fixed number of stripes,
+ * each its own open-addressing table guarded by its own lock, so writers
+ * only contend with writers that hash to the same stripe. Entries are never
+ * changed once they are in a table; add and remove publish a new entry into
+ * the slot instead. That lets get and contains run without taking any lock.
+ * Each stripe regrows on its own, so a resize only holds up writers to that
+ * stripe and never blocks readers.
+ *
+ * keySet, values and toArray are weakly consistent: they reflect some state
+ * of each stripe while they run, not one moment of the whole map.
+ *
+ * @version 1.0
+ */
+public class ConcurrentStripedHashMap<K, V> implements
+        HashMapInterface<K, V> {
+    public static final int DEFAULT_STRIPES = 16;
+
+    private final Stripe<K, V>[] stripes;
+
+    /**
+     * Create a hash map with no entries and {@link #DEFAULT_STRIPES} stripes.
+     */
+    public ConcurrentStripedHashMap() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Create a hash map with no entries.
+     *
+     * @param concurrencyLevel number of writers expected to run at once. It
+     *            is rounded up to a power of two to get the stripe count.
+     * @throws IllegalArgumentException if concurrencyLevel is not between 1
+     *             and 65536
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentStripedHashMap(int concurrencyLevel) {
+        if (concurrencyLevel <= 0 || concurrencyLevel > 1 << 16) {
+            throw new IllegalArgumentException(
+                    "Concurrency level must be between 1 and 65536");
+        }
+        int count = Integer.highestOneBit(concurrencyLevel);
+        if (count < concurrencyLevel) {
+            count <<= 1;
+        }
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<K, V>();
+        }
+    }
+
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        int hash = key.hashCode();
+        Stripe<K, V> stripe = stripeFor(hash);
+        stripe.lock.lock();
+        try {
+            return stripe.add(hash, new MapEntry<K, V>(key, value));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int hash = key.hashCode();
+        Stripe<K, V> stripe = stripeFor(hash);
+        stripe.lock.lock();
+        try {
+            return stripe.remove(hash, key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        MapEntry<K, V> entry = find(key);
+        if (entry == null) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return entry.getValue();
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            for (Stripe<K, V> stripe : stripes) {
+                stripe.reset();
+            }
+        } finally {
+            for (Stripe<K, V> stripe : stripes) {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    /**
+     * Copies the tables of every stripe, one after the other, into a single
+     * array. This is a snapshot, not a backing array.
+     *
+     * @return the tables of all stripes, including empty spaces
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public MapEntry<K, V>[] toArray() {
+        AtomicReferenceArray<MapEntry<K, V>>[] tables =
+                new AtomicReferenceArray[stripes.length];
+        int length = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            tables[i] = stripes[i].table;
+            length += tables[i].length();
+        }
+        MapEntry<K, V>[] out = new MapEntry[length];
+        int j = 0;
+        for (AtomicReferenceArray<MapEntry<K, V>> table : tables) {
+            for (int i = 0; i < table.length(); i++) {
+                out[j++] = table.get(i);
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        HashSet<K> keys = new HashSet<K>();
+        for (Stripe<K, V> stripe : stripes) {
+            AtomicReferenceArray<MapEntry<K, V>> table = stripe.table;
+            for (int i = 0; i < table.length(); i++) {
+                MapEntry<K, V> entry = table.get(i);
+                if (entry != null && !entry.isRemoved()) {
+                    keys.add(entry.getKey());
+                }
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public List<V> values() {
+        LinkedList<V> vals = new LinkedList<V>();
+        for (Stripe<K, V> stripe : stripes) {
+            AtomicReferenceArray<MapEntry<K, V>> table = stripe.table;
+            for (int i = 0; i < table.length(); i++) {
+                MapEntry<K, V> entry = table.get(i);
+                if (entry != null && !entry.isRemoved()) {
+                    vals.add(entry.getValue());
+                }
+            }
+        }
+        return vals;
+    }
+
+    /**
+     * looks up key without locking
+     *
+     * @param key
+     *            key to look for
+     * @throws IllegalArgumentException if key is null
+     * @return the live entry for key, null if it is not in the map
+     */
+    private MapEntry<K, V> find(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int hash = key.hashCode();
+        AtomicReferenceArray<MapEntry<K, V>> table = stripeFor(hash).table;
+        int length = table.length();
+        int ogIndex = (hash & 0x7fffffff) % length;
+        int index = ogIndex;
+        for (int quadratic = 1; quadratic <= length; quadratic++) {
+            MapEntry<K, V> entry = table.get(index);
+            if (entry == null) {
+                return null;
+            } else if (!entry.isRemoved() && entry.getKey().equals(key)) {
+                return entry;
+            }
+            index = (int) ((ogIndex + (long) quadratic * quadratic) % length);
+        }
+        return null;
+    }
+
+    /**
+     * @param hash
+     *            hash code of a key
+     * @return the stripe that owns the key
+     */
+    private Stripe<K, V> stripeFor(int hash) {
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * One independently locked open-addressing table. Only the thread
+     * holding the lock writes to it; readers go through the volatile table
+     * reference and the volatile slot reads of the atomic array.
+     */
+    private static final class Stripe<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile AtomicReferenceArray<MapEntry<K, V>> table;
+        private volatile int size;
+        // live entries plus removed markers, used to decide when to rebuild
+        private int used;
+
+        /**
+         * Create an empty stripe.
+         */
+        Stripe() {
+            reset();
+        }
+
+        /**
+         * empties the stripe. Caller must hold the lock.
+         */
+        void reset() {
+            table = new AtomicReferenceArray<MapEntry<K, V>>(STARTING_SIZE);
+            size = 0;
+            used = 0;
+        }
+
+        /**
+         * adds entry, replacing a live entry with the same key. Caller must
+         * hold the lock.
+         *
+         * @param hash
+         *            hash code of the entry's key
+         * @param entry
+         *            new entry, not yet visible to other threads
+         * @return the old value, null if the key was not in the stripe
+         */
+        V add(int hash, MapEntry<K, V> entry) {
+            if (used + 1 > (int) (table.length() * MAX_LOAD_FACTOR)) {
+                rebuild();
+            }
+            AtomicReferenceArray<MapEntry<K, V>> tab = table;
+            int length = tab.length();
+            int ogIndex = (hash & 0x7fffffff) % length;
+            int index = ogIndex;
+            int target = -1;
+            for (int quadratic = 1; quadratic <= length; quadratic++) {
+                MapEntry<K, V> current = tab.get(index);
+                if (current == null) {
+                    if (target == -1) {
+                        target = index;
+                        used++;
+                    }
+                    break;
+                } else if (current.isRemoved()) {
+                    if (target == -1) {
+                        target = index;
+                    }
+                } else if (current.getKey().equals(entry.getKey())) {
+                    tab.set(index, entry);
+                    return current.getValue();
+                }
+                index = (int) ((ogIndex + (long) quadratic * quadratic)
+                        % length);
+            }
+            // after a certain amount of time, it is not efficient to
+            // continue looking for spots
+            if (target == -1) {
+                rebuild(table.length() * 2 + 1);
+                return add(hash, entry);
+            }
+            tab.set(target, entry);
+            size++;
+            return null;
+        }
+
+        /**
+         * replaces the live entry for key with a removed marker. Caller must
+         * hold the lock.
+         *
+         * @param hash
+         *            hash code of key
+         * @param key
+         *            key to remove
+         * @throws java.util.NoSuchElementException if the key does not exist
+         * @return the value previously associated with the key
+         */
+        V remove(int hash, K key) {
+            AtomicReferenceArray<MapEntry<K, V>> tab = table;
+            int length = tab.length();
+            int ogIndex = (hash & 0x7fffffff) % length;
+            int index = ogIndex;
+            for (int quadratic = 1; quadratic <= length; quadratic++) {
+                MapEntry<K, V> current = tab.get(index);
+                if (current == null) {
+                    break;
+                } else if (!current.isRemoved()
+                        && current.getKey().equals(key)) {
+                    MapEntry<K, V> marker =
+                            new MapEntry<K, V>(current.getKey(),
+                                    current.getValue());
+                    marker.setRemoved(true);
+                    tab.set(index, marker);
+                    size--;
+                    return current.getValue();
+                }
+                index = (int) ((ogIndex + (long) quadratic * quadratic)
+                        % length);
+            }
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+
+        /**
+         * rebuilds the table, growing it to 2n + 1 if live entries alone
+         * would fill more than half of the load factor, otherwise keeping
+         * the capacity and only dropping removed markers
+         */
+        private void rebuild() {
+            int length = table.length();
+            if (size + 1 > (int) (length * MAX_LOAD_FACTOR / 2)) {
+                length = length * 2 + 1;
+            }
+            rebuild(length);
+        }
+
+        /**
+         * copies the live entries into a new table of the given length and
+         * publishes it. Readers keep using the old table until they next
+         * read the table reference; it is not written to again.
+         *
+         * @param length
+         *            length of the new table
+         */
+        private void rebuild(int length) {
+            AtomicReferenceArray<MapEntry<K, V>> old = table;
+            AtomicReferenceArray<MapEntry<K, V>> tab =
+                    new AtomicReferenceArray<MapEntry<K, V>>(length);
+            int count = 0;
+            for (int i = 0; i < old.length(); i++) {
+                MapEntry<K, V> entry = old.get(i);
+                if (entry != null && !entry.isRemoved()) {
+                    int ogIndex = (entry.getKey().hashCode() & 0x7fffffff)
+                            % length;
+                    int index = ogIndex;
+                    int quadratic = 1;
+                    while (tab.get(index) != null) {
+                        if (quadratic > length) {
+                            rebuild(length * 2 + 1);
+                            return;
+                        }
+                        index = (int) ((ogIndex
+                                + (long) quadratic * quadratic) % length);
+                        quadratic++;
+                    }
+                    tab.lazySet(index, entry);
+                    count++;
+                }
+            }
+            used = count;
+            table = tab;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * A count-min sketch of 4 bit counters for estimating how often keys have
+ * been seen. Each key maps to one counter in each of four rows and its
+ * estimate is the smallest of them, so collisions can only overestimate.
+ * Counters stop at 15. Once a sample's worth of increments has been recorded
+ * every counter is halved, so old popularity fades and the sketch keeps
+ * following the recent traffic.
+ *
+ * @version 1.0
+ */
+public class CountMinSketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    // odd multipliers giving each row its own hash of the key
+    private static final int[] SEEDS = {0x97cb3127, 0xb1a83721, 0x61d3c6b5,
+        0x2c1b3c6d};
+
+    // 16 counters of 4 bits each per long
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Create a sketch sized for tracking about capacity distinct keys.
+     *
+     * @param capacity number of keys the sketch should tell apart
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public CountMinSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        int counters = Integer.highestOneBit(
+                Math.min(Math.max(capacity, 16), 1 << 29) * 2 - 1);
+        table = new long[counters / 16];
+        counterMask = counters - 1;
+        sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Records one more occurrence of the key with the given hash code.
+     *
+     * @param hash hash code of the key
+     */
+    public void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int counter = counterFor(hash, row);
+            int shift = (counter & 15) << 2;
+            long word = table[counter >>> 4];
+            if (((word >>> shift) & MAX_COUNT) != MAX_COUNT) {
+                table[counter >>> 4] = word + (1L << shift);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Estimates how many times the key with the given hash code has been
+     * seen since the counters were last halved.
+     *
+     * @param hash hash code of the key
+     * @return estimated count, at most 15
+     */
+    public int frequency(int hash) {
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            int counter = counterFor(hash, row);
+            int count = (int) ((table[counter >>> 4] >>> ((counter & 15) << 2))
+                    & MAX_COUNT);
+            min = Math.min(min, count);
+        }
+        return min;
+    }
+
+    /**
+     * Sets every counter back to 0.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        additions = 0;
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+        }
+        additions /= 2;
+    }
+
+    /**
+     * @param hash
+     *            hash code of the key
+     * @param row
+     *            row of the sketch
+     * @return index of the key's counter in that row
+     */
+    private int counterFor(int hash, int row) {
+        return PowerOfTwoHashMap.mix(hash * SEEDS[row]) & counterMask;
+    }
+}
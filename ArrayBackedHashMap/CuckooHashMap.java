@@ -0,0 +1,621 @@
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A bucketized cuckoo hash map. Every key has two candidate buckets of 4
+ * slots each, picked by two different hashes, and always lives in one of them
+ * or in a small stash. A lookup therefore reads at most 2 buckets and the
+ * stash, whatever the load, so get is O(1) in the worst case and not just on
+ * average.
+ *
+ * When both buckets of a new key are full, a breadth first search through
+ * the other candidate buckets of the entries in the way finds the shortest
+ * chain of moves that frees a slot, and the entries on the chain are each
+ * moved to their other bucket. If no chain is found within a bounded search
+ * the entry goes into the stash, and the table only grows once the stash is
+ * full.
+ *
+ * Keys with the same hash code always share both buckets, so no table size
+ * can fit more than 2 * BUCKET_SIZE of them in their buckets, and growing
+ * the table does not help once both buckets of a key are full of keys with
+ * its hash. The map then switches to hashing String keys with SipHash-2-4
+ * under a random key, as {@link HashMap#randomizeHashing()} does, and
+ * rebuilds the table. Keys that still fill both of their buckets with their
+ * own hash, such as keys of other types with equal hashCode() values, go
+ * into an overflow list with no size limit. Finding one of those is a scan
+ * of the list, so it costs O(n) in the number of such keys.
+ *
+ * @version 1.0
+ */
+public class CuckooHashMap<K, V> implements HashMapInterface<K, V> {
+    public static final int BUCKET_SIZE = 4;
+    public static final int STASH_SIZE = 4;
+
+    private static final int STARTING_BUCKETS = 4;
+    // most buckets the displacement search looks at before giving up
+    private static final int MAX_SEARCH = 512;
+    // added to the hash code before mixing to get the second hash
+    private static final int SECOND_SEED = 0x9e3779b9;
+
+    private K[] keys;
+    private V[] values;
+    private int[] hashes;
+    private int bucketMask;
+
+    private K[] stashKeys;
+    private V[] stashValues;
+    private int[] stashHashes;
+    private int stashCount;
+
+    // entries whose buckets are both full of keys with the same hash
+    private final ArrayList<MapEntry<K, V>> overflow =
+            new ArrayList<MapEntry<K, V>>();
+
+    private int size;
+
+    // once randomized, String keys are hashed with SipHash under a random
+    // key, other keys by their hashCode() as before
+    private boolean randomized;
+    private long hashKey0;
+    private long hashKey1;
+
+    // displacement search queue: the bucket reached, the queue index it was
+    // reached from, and the slot whose entry would move into it
+    private final int[] searchBucket = new int[MAX_SEARCH];
+    private final int[] searchParent = new int[MAX_SEARCH];
+    private final int[] searchSlot = new int[MAX_SEARCH];
+
+    /**
+     * Create a hash map with no entries.
+     */
+    @SuppressWarnings("unchecked")
+    public CuckooHashMap() {
+        stashKeys = (K[]) new Object[STASH_SIZE];
+        stashValues = (V[]) new Object[STASH_SIZE];
+        stashHashes = new int[STASH_SIZE];
+        clear();
+    }
+
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        int hash = hash(key);
+        int index = find(key, hash);
+        if (index >= 0) {
+            V old = values[index];
+            values[index] = value;
+            return old;
+        } else if (index < -1 - STASH_SIZE) {
+            MapEntry<K, V> entry = overflow.get(-index - 2 - STASH_SIZE);
+            V old = entry.getValue();
+            entry.setValue(value);
+            return old;
+        } else if (index < -1) {
+            int stashIndex = -index - 2;
+            V old = stashValues[stashIndex];
+            stashValues[stashIndex] = value;
+            return old;
+        }
+        while (!insert(key, value, hash)) {
+            if (countHash(hash) < 2 * BUCKET_SIZE) {
+                regrow();
+            } else if (!randomized && key instanceof String) {
+                randomizeHashing();
+                hash = hash(key);
+            } else {
+                overflow.add(new MapEntry<K, V>(key, value, hash));
+                break;
+            }
+        }
+        size++;
+        return null;
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int index = find(key, hash(key));
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        V old;
+        if (index >= 0) {
+            old = values[index];
+            keys[index] = null;
+            values[index] = null;
+            unstash();
+        } else if (index < -1 - STASH_SIZE) {
+            old = removeFromOverflow(-index - 2 - STASH_SIZE).getValue();
+        } else {
+            int stashIndex = -index - 2;
+            old = stashValues[stashIndex];
+            removeFromStash(stashIndex);
+        }
+        size--;
+        return old;
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int index = find(key, hash(key));
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        } else if (index >= 0) {
+            return values[index];
+        } else if (index < -1 - STASH_SIZE) {
+            return overflow.get(-index - 2 - STASH_SIZE).getValue();
+        }
+        return stashValues[-index - 2];
+    }
+
+    @Override
+    public boolean contains(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        return find(key, hash(key)) != -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        int slots = STARTING_BUCKETS * BUCKET_SIZE;
+        keys = (K[]) new Object[slots];
+        values = (V[]) new Object[slots];
+        hashes = new int[slots];
+        bucketMask = STARTING_BUCKETS - 1;
+        for (int i = 0; i < STASH_SIZE; i++) {
+            stashKeys[i] = null;
+            stashValues[i] = null;
+        }
+        stashCount = 0;
+        overflow.clear();
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the table as an array of entries, bucket after bucket, with
+     * the stash and then the overflow list after the last bucket. Unlike
+     * {@link HashMap#toArray()} this is not the backing array, so changing
+     * the entries does not change the map.
+     *
+     * @return the table, stash and overflow as entries, including empty
+     *         spaces
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public MapEntry<K, V>[] toArray() {
+        MapEntry<K, V>[] table = new MapEntry[keys.length + STASH_SIZE
+                + overflow.size()];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                table[i] = new MapEntry<K, V>(keys[i], values[i], hashes[i]);
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            table[keys.length + i] = new MapEntry<K, V>(stashKeys[i],
+                    stashValues[i], stashHashes[i]);
+        }
+        for (int i = 0; i < overflow.size(); i++) {
+            MapEntry<K, V> entry = overflow.get(i);
+            table[keys.length + STASH_SIZE + i] = new MapEntry<K, V>(
+                    entry.getKey(), entry.getValue(), entry.getHash());
+        }
+        return table;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        HashSet<K> set = new HashSet<K>();
+        for (MapEntry<K, V> entry : toArray()) {
+            if (entry != null) {
+                set.add(entry.getKey());
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public List<V> values() {
+        LinkedList<V> vals = new LinkedList<V>();
+        for (MapEntry<K, V> entry : toArray()) {
+            if (entry != null) {
+                vals.add(entry.getValue());
+            }
+        }
+        return vals;
+    }
+
+    /**
+     * looks in both buckets of the key, then in the stash, which is a
+     * bounded number of slots however full the map is, and then in the
+     * overflow list, which is empty unless keys share a hash code
+     *
+     * @param key
+     *            key to look for
+     * @param hash
+     *            hash code of key
+     * @return slot of the key, -2 - i if it is in stash slot i,
+     *         -2 - STASH_SIZE - i if it is at index i of the overflow list,
+     *         -1 if it is not in the map
+     */
+    private int find(K key, int hash) {
+        int first = firstBucket(hash) * BUCKET_SIZE;
+        int second = secondBucket(hash) * BUCKET_SIZE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            if (keys[first + i] != null && hashes[first + i] == hash
+                    && keys[first + i].equals(key)) {
+                return first + i;
+            }
+            if (keys[second + i] != null && hashes[second + i] == hash
+                    && keys[second + i].equals(key)) {
+                return second + i;
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            if (stashHashes[i] == hash && stashKeys[i].equals(key)) {
+                return -2 - i;
+            }
+        }
+        for (int i = 0; i < overflow.size(); i++) {
+            MapEntry<K, V> entry = overflow.get(i);
+            if (entry.getHash() == hash && entry.getKey().equals(key)) {
+                return -2 - STASH_SIZE - i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * puts a key that is not in the map into one of its buckets, moving
+     * other entries out of the way if needed, or into the stash
+     *
+     * @param key
+     *            key to add
+     * @param value
+     *            value to add
+     * @param hash
+     *            hash code of key
+     * @return false if the key fit in neither its buckets nor the stash
+     */
+    private boolean insert(K key, V value, int hash) {
+        int slot = freeSlot(firstBucket(hash));
+        if (slot == -1) {
+            slot = freeSlot(secondBucket(hash));
+        }
+        if (slot == -1) {
+            slot = displace(firstBucket(hash), secondBucket(hash));
+        }
+        if (slot != -1) {
+            keys[slot] = key;
+            values[slot] = value;
+            hashes[slot] = hash;
+            return true;
+        }
+        if (stashCount < STASH_SIZE) {
+            stashKeys[stashCount] = key;
+            stashValues[stashCount] = value;
+            stashHashes[stashCount] = hash;
+            stashCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Searches breadth first from both buckets of a new key for the nearest
+     * bucket with a free slot, where each step goes from a bucket to the
+     * other bucket of one of its entries. Then moves every entry on the path
+     * one step along it, starting from the far end, which leaves a free slot
+     * in one of the starting buckets.
+     *
+     * @param first
+     *            first bucket of the new key
+     * @param second
+     *            second bucket of the new key
+     * @return the slot freed in a starting bucket, -1 if the search ran out
+     */
+    private int displace(int first, int second) {
+        searchBucket[0] = first;
+        searchParent[0] = -1;
+        searchBucket[1] = second;
+        searchParent[1] = -1;
+        int tail = 2;
+        for (int head = 0; head < tail; head++) {
+            int bucket = searchBucket[head];
+            for (int i = 0; i < BUCKET_SIZE && tail < MAX_SEARCH; i++) {
+                int slot = bucket * BUCKET_SIZE + i;
+                int other = otherBucket(hashes[slot], bucket);
+                searchBucket[tail] = other;
+                searchParent[tail] = head;
+                searchSlot[tail] = slot;
+                int free = freeSlot(other);
+                if (free != -1) {
+                    // walk back up the path, moving each entry into the slot
+                    // the previous move freed
+                    for (int node = tail; searchParent[node] != -1;
+                            node = searchParent[node]) {
+                        int from = searchSlot[node];
+                        keys[free] = keys[from];
+                        values[free] = values[from];
+                        hashes[free] = hashes[from];
+                        keys[from] = null;
+                        values[from] = null;
+                        free = from;
+                    }
+                    return free;
+                }
+                tail++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * After a slot is freed, moves stashed and overflowed entries back into
+     * their buckets if either now has room, so lookups rarely need the stash.
+     */
+    private void unstash() {
+        for (int i = overflow.size() - 1; i >= 0; i--) {
+            MapEntry<K, V> entry = overflow.get(i);
+            int slot = freeSlot(firstBucket(entry.getHash()));
+            if (slot == -1) {
+                slot = freeSlot(secondBucket(entry.getHash()));
+            }
+            if (slot != -1) {
+                keys[slot] = entry.getKey();
+                values[slot] = entry.getValue();
+                hashes[slot] = entry.getHash();
+                removeFromOverflow(i);
+            }
+        }
+        for (int i = stashCount - 1; i >= 0; i--) {
+            int hash = stashHashes[i];
+            int slot = freeSlot(firstBucket(hash));
+            if (slot == -1) {
+                slot = freeSlot(secondBucket(hash));
+            }
+            if (slot != -1) {
+                keys[slot] = stashKeys[i];
+                values[slot] = stashValues[i];
+                hashes[slot] = hash;
+                removeFromStash(i);
+            }
+        }
+    }
+
+    /**
+     * fills stash slot i with the last stashed entry
+     *
+     * @param i
+     *            stash slot to empty
+     */
+    private void removeFromStash(int i) {
+        stashCount--;
+        stashKeys[i] = stashKeys[stashCount];
+        stashValues[i] = stashValues[stashCount];
+        stashHashes[i] = stashHashes[stashCount];
+        stashKeys[stashCount] = null;
+        stashValues[stashCount] = null;
+    }
+
+    /**
+     * fills index i of the overflow list with its last entry
+     *
+     * @param i
+     *            index of the overflow list to empty
+     * @return the entry that was at index i
+     */
+    private MapEntry<K, V> removeFromOverflow(int i) {
+        MapEntry<K, V> last = overflow.remove(overflow.size() - 1);
+        if (i == overflow.size()) {
+            return last;
+        }
+        return overflow.set(i, last);
+    }
+
+    /**
+     * @param hash
+     *            hash of a key
+     * @return number of entries with exactly that hash in the two buckets
+     *         of the hash, 2 * BUCKET_SIZE once both are full of them
+     */
+    private int countHash(int hash) {
+        int count = 0;
+        int first = firstBucket(hash) * BUCKET_SIZE;
+        int second = secondBucket(hash) * BUCKET_SIZE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            if (keys[first + i] != null && hashes[first + i] == hash) {
+                count++;
+            }
+            if (second != first && keys[second + i] != null
+                    && hashes[second + i] == hash) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Switches to hashing String keys under a random key and rebuilds the
+     * table at the same number of buckets with the new hashes.
+     */
+    private void randomizeHashing() {
+        SecureRandom random = new SecureRandom();
+        hashKey0 = random.nextLong();
+        hashKey1 = random.nextLong();
+        randomized = true;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                hashes[i] = hash(keys[i]);
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            stashHashes[i] = hash(stashKeys[i]);
+        }
+        for (int i = 0; i < overflow.size(); i++) {
+            MapEntry<K, V> entry = overflow.get(i);
+            overflow.set(i, new MapEntry<K, V>(entry.getKey(),
+                    entry.getValue(), hash(entry.getKey())));
+        }
+        rebuild(bucketMask + 1);
+    }
+
+    /**
+     * @param key
+     *            non null key
+     * @return hash of key that decides its buckets
+     */
+    private int hash(K key) {
+        if (randomized && key instanceof String) {
+            long hash = SipHash.hash(hashKey0, hashKey1, (String) key);
+            return (int) (hash ^ (hash >>> 32));
+        }
+        // the buckets already come from a mix of the hash, and no seed can
+        // split keys whose hash codes are equal
+        return key.hashCode();
+    }
+
+    /**
+     * Doubles the number of buckets and puts every entry, including the
+     * stashed ones, back in.
+     */
+    private void regrow() {
+        rebuild((bucketMask + 1) * 2);
+    }
+
+    /**
+     * Puts every entry, including the stashed and overflowed ones, back into
+     * a table of the given number of buckets by their stored hashes. Entries
+     * whose buckets are full of their own hash go to the overflow list.
+     * Doubles the buckets again if any other entry does not fit.
+     *
+     * @param buckets
+     *            number of buckets to start with
+     */
+    @SuppressWarnings("unchecked")
+    private void rebuild(int buckets) {
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+        int[] oldHashes = hashes;
+        K[] oldStashKeys = stashKeys.clone();
+        V[] oldStashValues = stashValues.clone();
+        int[] oldStashHashes = stashHashes.clone();
+        int oldStashCount = stashCount;
+        ArrayList<MapEntry<K, V>> oldOverflow =
+                new ArrayList<MapEntry<K, V>>(overflow);
+        boolean placed = false;
+        while (!placed) {
+            keys = (K[]) new Object[buckets * BUCKET_SIZE];
+            values = (V[]) new Object[buckets * BUCKET_SIZE];
+            hashes = new int[buckets * BUCKET_SIZE];
+            bucketMask = buckets - 1;
+            for (int i = 0; i < STASH_SIZE; i++) {
+                stashKeys[i] = null;
+                stashValues[i] = null;
+            }
+            stashCount = 0;
+            overflow.clear();
+            placed = true;
+            for (int i = 0; i < oldKeys.length && placed; i++) {
+                if (oldKeys[i] != null) {
+                    placed = place(oldKeys[i], oldValues[i], oldHashes[i]);
+                }
+            }
+            for (int i = 0; i < oldStashCount && placed; i++) {
+                placed = place(oldStashKeys[i], oldStashValues[i],
+                        oldStashHashes[i]);
+            }
+            for (int i = 0; i < oldOverflow.size() && placed; i++) {
+                MapEntry<K, V> entry = oldOverflow.get(i);
+                placed = place(entry.getKey(), entry.getValue(),
+                        entry.getHash());
+            }
+            buckets *= 2;
+        }
+    }
+
+    /**
+     * inserts an entry during a rebuild, sending it to the overflow list if
+     * its buckets are full of its own hash
+     *
+     * @param key
+     *            key to add
+     * @param value
+     *            value to add
+     * @param hash
+     *            hash code of key
+     * @return false if the entry did not fit and the table must grow
+     */
+    private boolean place(K key, V value, int hash) {
+        if (insert(key, value, hash)) {
+            return true;
+        } else if (countHash(hash) < 2 * BUCKET_SIZE) {
+            return false;
+        }
+        overflow.add(new MapEntry<K, V>(key, value, hash));
+        return true;
+    }
+
+    /**
+     * @param bucket
+     *            bucket to look in
+     * @return first empty slot of the bucket, -1 if it is full
+     */
+    private int freeSlot(int bucket) {
+        int start = bucket * BUCKET_SIZE;
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (keys[i] == null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param hash
+     *            hash code of a key
+     * @param bucket
+     *            one of the key's buckets
+     * @return the key's other bucket
+     */
+    private int otherBucket(int hash, int bucket) {
+        int first = firstBucket(hash);
+        return bucket == first ? secondBucket(hash) : first;
+    }
+
+    /**
+     * @param hash
+     *            hash code of a key
+     * @return the key's first bucket
+     */
+    private int firstBucket(int hash) {
+        return PowerOfTwoHashMap.mix(hash) & bucketMask;
+    }
+
+    /**
+     * @param hash
+     *            hash code of a key
+     * @return the key's second bucket
+     */
+    private int secondBucket(int hash) {
+        return PowerOfTwoHashMap.mix(hash + SECOND_SEED) & bucketMask;
+    }
+}
@@ -1,21 +1,127 @@
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.security.SecureRandom;
+import java.util.AbstractSequentialList;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class HashMap<K, V> implements HashMapInterface<K, V> {
+    public static final double DEFAULT_MAX_REMOVED_RATIO = 0.25;
+    // an add that has to look at more slots than this is taken as a sign of
+    // colliding keys, and the map switches to randomized hashing
+    public static final int MAX_PROBES = 64;
 
-    // Do not make any new instance variables.
     private MapEntry<K, V>[] table;
     private int size;
+    // entries marked as removed that still take up a slot
+    private int removedCount;
+    // bumped on every change that adds, removes or moves entries, so
+    // iterators and forEach can fail fast
+    private int modCount;
+    private final double maxRemovedRatio;
+    // null unless metrics were enabled, so the hot path only pays a null
+    // check
+    private HashMapMetrics metrics;
+    // once randomized, keys are hashed with SipHash (Strings) or a seeded
+    // mix of hashCode() (anything else) under a random key
+    private boolean randomized;
+    private long hashKey0;
+    private long hashKey1;
+    // set when an add probed past MAX_PROBES, handled by the next new entry
+    private boolean rekeyPending;
 
     /**
-     * Create a hash map with no entries.
+     * Create a hash map with no entries that compacts itself once more than
+     * {@link #DEFAULT_MAX_REMOVED_RATIO} of its slots hold removed entries.
      */
     public HashMap() {
-        table = new MapEntry[STARTING_SIZE];
+        this(0, DEFAULT_MAX_REMOVED_RATIO);
+    }
+
+    /**
+     * Create a hash map with no entries.
+     *
+     * @param maxRemovedRatio fraction of the slots that may hold removed
+     *            entries before the table is rehashed in place
+     * @throws IllegalArgumentException if maxRemovedRatio is not greater than
+     *            0 and at most 1
+     */
+    public HashMap(double maxRemovedRatio) {
+        this(0, maxRemovedRatio);
+    }
+
+    /**
+     * Creates a hash map with no entries whose table can take expectedSize
+     * entries without regrowing. This is a named factory rather than an
+     * int constructor so that it cannot be mixed up with
+     * {@link #HashMap(double)}.
+     *
+     * @param expectedSize number of entries the map is expected to hold
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @throws IllegalArgumentException if expectedSize is negative
+     * @return the new map
+     */
+    public static <K, V> HashMap<K, V> withExpectedSize(int expectedSize) {
+        return withExpectedSize(expectedSize, DEFAULT_MAX_REMOVED_RATIO);
+    }
+
+    /**
+     * Creates a hash map with no entries whose table can take expectedSize
+     * entries without regrowing.
+     *
+     * @param expectedSize number of entries the map is expected to hold
+     * @param maxRemovedRatio fraction of the slots that may hold removed
+     *            entries before the table is rehashed in place
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @throws IllegalArgumentException if expectedSize is negative, or
+     *            maxRemovedRatio is not greater than 0 and at most 1
+     * @return the new map
+     */
+    public static <K, V> HashMap<K, V> withExpectedSize(int expectedSize,
+            double maxRemovedRatio) {
+        return new HashMap<K, V>(expectedSize, maxRemovedRatio);
+    }
+
+    /**
+     * Create a hash map with no entries whose table can take expectedSize
+     * entries without regrowing.
+     *
+     * @param expectedSize number of entries the map is expected to hold
+     * @param maxRemovedRatio fraction of the slots that may hold removed
+     *            entries before the table is rehashed in place
+     * @throws IllegalArgumentException if expectedSize is negative, or
+     *            maxRemovedRatio is not greater than 0 and at most 1
+     */
+    private HashMap(int expectedSize, double maxRemovedRatio) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException(
+                    "Expected size cannot be negative");
+        }
+        if (!(maxRemovedRatio > 0 && maxRemovedRatio <= 1)) {
+            throw new IllegalArgumentException(
+                    "Removed ratio must be greater than 0 and at most 1");
+        }
+        this.maxRemovedRatio = maxRemovedRatio;
+        table = new MapEntry[tableLengthFor(expectedSize)];
         size = 0;
+        removedCount = 0;
     }
 
     @Override
@@ -26,193 +132,728 @@ public class HashMap<K, V> implements HashMapInterface<K, V> {
         if (size + 1 > (int) (table.length * MAX_LOAD_FACTOR)) {
             regrow();
         }
-        int index = Math.abs(key.hashCode()) % table.length;
-        int ogIndex = index;
-        MapEntry<K, V> entry = new MapEntry<K, V>(key, value);
-        entry.setRemoved(false);
-        boolean entered = false;
-        V inBucket = null;
-        int quadratic = 1;
-        while (!entered) {
-            if (table[index] == null) {
-                table[index] = entry;
-                entered = true;
-            } else {
-                if (table[index].isRemoved()) {
-                    inBucket = checkDuplicate(entry, quadratic, ogIndex);
-                    if (inBucket != null) {
-                        size--;
-                        entered = true;
-                    } else {
-                        table[index] = entry;
-                        entered = true;
-                    }
-                } else if (table[index].getKey().equals(key)) {
-                    inBucket = table[index].getValue();
-                    table[index] = entry;
-                    size--;
-                    entered = true;
-                } else {
-                    index = ogIndex + quadratic * quadratic;
-                    quadratic++;
-                    if (index >= table.length) {
-                        int factor = index / table.length;
-                        index = index - table.length * factor;
+        return insert(key, value);
+    }
 
-                    }
-                    // after a certain amount of time, it is not efficient to
-                    // continue looking for spots
-                    if (quadratic > table.length) {
-                        entered = true;
-                        regrow();
-                        add(key, value);
-                    }
+    /**
+     * Adds every entry of another map, growing the table at most once
+     * beforehand instead of checking for regrowth on every entry.
+     * Should be O(m) where m is the size of other
+     *
+     * @param other map to copy the entries of
+     * @throws IllegalArgumentException if other is null
+     */
+    public void addAll(HashMapInterface<? extends K, ? extends V> other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Map cannot be null");
+        }
+        ensureCapacity(size + other.size());
+        if (other instanceof HashMap) {
+            MapEntry<? extends K, ? extends V>[] from =
+                    ((HashMap<? extends K, ? extends V>) other).table;
+            for (int i = 0; i < from.length; i++) {
+                if (from[i] != null && !from[i].isRemoved()) {
+                    insert(from[i].getKey(), from[i].getValue());
                 }
             }
+        } else {
+            addAllFrom(other);
         }
-        size++;
-        return inBucket;
     }
 
     /**
-     * helper method so that if an encountered bucket has a removed object, the
-     * table continues to look for duplicate keys
+     * copies the entries of a map that is not a HashMap, going through its
+     * key set
      *
-     * @param entry
-     *            entry that is being entered
-     * @param quadratic
-     *            current quadratic that is being added
-     * @param ogIndex
-     *            original hash index
-     * @return value if entered, null if not
+     * @param other
+     *            map to copy the entries of
+     * @param <L>
+     *            key type of other
+     */
+    private <L extends K> void addAllFrom(
+            HashMapInterface<L, ? extends V> other) {
+        for (L key : other.keySet()) {
+            insert(key, other.get(key));
+        }
+    }
+
+    /**
+     * Adds every entry of a {@code java.util.Map}, growing the table at most
+     * once beforehand instead of checking for regrowth on every entry.
+     * Should be O(m) where m is the size of map
+     *
+     * @param map map to copy the entries of
+     * @throws IllegalArgumentException if map is null or holds a null key or
+     *            value
+     */
+    public void addAll(Map<? extends K, ? extends V> map) {
+        if (map == null) {
+            throw new IllegalArgumentException("Map cannot be null");
+        }
+        ensureCapacity(size + map.size());
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                throw new IllegalArgumentException(
+                        "Key or Value cannot be null");
+            }
+            insert(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Grows the table, if needed, so that it can hold expectedSize entries
+     * without regrowing.
+     * Should be O(n)
+     *
+     * @param expectedSize number of entries the map is expected to hold
+     */
+    public void ensureCapacity(int expectedSize) {
+        int length = tableLengthFor(expectedSize);
+        if (length > table.length) {
+            rehash(length);
+        }
+    }
+
+    /**
+     * @param expectedSize
+     *            number of entries to fit
+     * @return odd table length that takes expectedSize entries under the
+     *         load factor, at least STARTING_SIZE
      */
-    private V checkDuplicate(MapEntry<K, V> entry, int quadratic, int ogIndex) {
-        int index = ogIndex + quadratic * quadratic;
-        if (index >= table.length) {
-            int factor = index / table.length;
-            index = index - table.length * factor;
+    private static int tableLengthFor(int expectedSize) {
+        long length = (long) (expectedSize / MAX_LOAD_FACTOR) + 2;
+        if (length <= STARTING_SIZE) {
+            return STARTING_SIZE;
+        }
+        return (int) Math.min(length | 1, Integer.MAX_VALUE - 8);
+    }
 
+    /**
+     * adds a non null key and value without checking the load factor first
+     *
+     * @param key
+     *            key to add
+     * @param value
+     *            value to add
+     * @return the old value of the key, null if it was not in the map
+     */
+    private V insert(K key, V value) {
+        int hash = hash(key);
+        int index = locate(key, hash, HashMapMetrics.Operation.ADD,
+                HashMapMetrics.Operation.ADD);
+        if (index >= 0) {
+            V inBucket = table[index].getValue();
+            table[index].setValue(value);
+            return inBucket;
         }
-        for (int i = 0; i < table.length * 5; i++) {
+        putNew(index, key, value, hash);
+        return null;
+    }
+
+    /**
+     * finds either the slot holding key or the slot it would be added to,
+     * in a single probe sequence
+     *
+     * @param key
+     *            key to look for
+     * @param hash
+     *            hash code of key
+     * @param hitOp
+     *            operation to record the probe length under if key is found,
+     *            null to record nothing
+     * @param missOp
+     *            operation to record the probe length under if key is not
+     *            found, null to record nothing
+     * @return index of the key if it is in the map, otherwise -2 minus the
+     *         first free or removed slot on its probe sequence, or -1 if
+     *         the sequence has neither
+     */
+    private int locate(K key, int hash, HashMapMetrics.Operation hitOp,
+            HashMapMetrics.Operation missOp) {
+        int ogIndex = (hash & 0x7fffffff) % table.length;
+        int index = ogIndex;
+        int firstRemoved = -1;
+        int quadratic = 1;
+        // keep going past removed entries, the key may still be further on
+        for (; quadratic <= table.length; quadratic++) {
             if (table[index] == null) {
-                return null;
-            } else if (table[index].getKey().equals(entry.getKey())) {
-                if (table[index].isRemoved()) {
-                    return null;
-                } else {
-                    V temp = table[index].getValue();
-                    table[index] = entry;
-                    return temp;
+                if (firstRemoved == -1) {
+                    firstRemoved = index;
                 }
-            } else {
-                index = ogIndex + quadratic * quadratic;
-                quadratic++;
-                if (index >= table.length) {
-                    int factor = index / table.length;
-                    index = index - table.length * factor;
+                break;
+            } else if (table[index].isRemoved()) {
+                if (firstRemoved == -1) {
+                    firstRemoved = index;
                 }
+            } else if (table[index].getHash() == hash
+                    && table[index].getKey().equals(key)) {
+                if (metrics != null && hitOp != null) {
+                    metrics.recordProbes(hitOp, quadratic);
+                }
+                return index;
             }
+            index = probe(ogIndex, quadratic);
         }
-        return null;
+        if (metrics != null && missOp != null) {
+            metrics.recordProbes(missOp, Math.min(quadratic, table.length));
+        }
+        if (quadratic > MAX_PROBES && !randomized) {
+            rekeyPending = true;
+        }
+        return -2 - firstRemoved;
+    }
+
+    /**
+     * adds a key that is not in the map at the slot locate found for it,
+     * regrowing first if the table is full or locate found no slot
+     *
+     * @param located
+     *            what locate returned for key, less than 0
+     * @param key
+     *            key to add
+     * @param value
+     *            value to add
+     * @param hash
+     *            hash code of key
+     */
+    private void putNew(int located, K key, V value, int hash) {
+        if (rekeyPending) {
+            randomizeHashing();
+            hash = hash(key);
+            located = locate(key, hash, null, null);
+        }
+        // after a certain amount of time, it is not efficient to
+        // continue looking for spots
+        while (located == -1
+                || size + 1 > (int) (table.length * MAX_LOAD_FACTOR)) {
+            regrow();
+            located = locate(key, hash, null, null);
+        }
+        int index = -2 - located;
+        if (table[index] != null) {
+            removedCount--;
+        }
+        table[index] = new MapEntry<K, V>(key, value, hash);
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Switches to hashing keys under a random key: SipHash-2-4 over the
+     * characters of String keys, and a seeded mix of hashCode() for other
+     * keys, then rehashes the table. An attacker who does not know the key
+     * cannot pick Strings that collide. Keys of other types whose
+     * hashCode() values are equal still collide, but keys whose different
+     * hash codes merely land on the same slots no longer do.
+     *
+     * The map does this by itself the first time an add has to look at
+     * more than {@link #MAX_PROBES} slots. Lookups of String keys cost more
+     * afterwards, since their cached hash codes are no longer used.
+     * Should be O(n)
+     */
+    public void randomizeHashing() {
+        long begin = metrics == null ? 0 : System.nanoTime();
+        SecureRandom random = new SecureRandom();
+        hashKey0 = random.nextLong();
+        hashKey1 = random.nextLong();
+        randomized = true;
+        rekeyPending = false;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null && !table[i].isRemoved()) {
+                table[i].setHash(hash(table[i].getKey()));
+            }
+        }
+        moveEntries(table.length);
+        if (metrics != null) {
+            metrics.recordRekey(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * @return whether keys are hashed under a random key
+     */
+    public boolean isHashingRandomized() {
+        return randomized;
+    }
+
+    /**
+     * @param key
+     *            non null key
+     * @return hash of key that decides its slots
+     */
+    private int hash(K key) {
+        if (!randomized) {
+            return key.hashCode();
+        } else if (key instanceof String) {
+            long hash = SipHash.hash(hashKey0, hashKey1, (String) key);
+            return (int) (hash ^ (hash >>> 32));
+        }
+        return PowerOfTwoHashMap.mix(key.hashCode() ^ (int) hashKey0);
     }
 
     /**
      * regrows table to 2n +1 size
      */
     private void regrow() {
+        rehash(table.length * 2 + 1);
+    }
+
+    /**
+     * Rehashes every entry into a table of the same size, dropping all
+     * entries marked as removed so they no longer lengthen probes.
+     * Should be O(n)
+     */
+    public void compact() {
+        if (removedCount > 0) {
+            rehash(table.length);
+        }
+    }
+
+    /**
+     * Empties the map into a table of exactly the given length, for
+     * HashMapSnapshot to fill slot by slot.
+     *
+     * @param length
+     *            length of the table the snapshot was taken from
+     */
+    @SuppressWarnings("unchecked")
+    void startRestore(int length) {
+        table = new MapEntry[Math.max(length, STARTING_SIZE)];
+        size = 0;
+        removedCount = 0;
+        modCount++;
+    }
+
+    /**
+     * Puts an entry straight into the slot it held when the snapshot was
+     * taken, without probing, if the key still hashes the same and the slot
+     * is free.
+     *
+     * @param slot
+     *            slot the entry held
+     * @param key
+     *            key of the entry
+     * @param value
+     *            value of the entry
+     * @param hash
+     *            hash the entry had when the snapshot was taken
+     * @return false if the entry was not placed and has to be added
+     */
+    boolean restoreAt(int slot, K key, V value, int hash) {
+        if (slot < 0 || slot >= table.length || table[slot] != null
+                || hash(key) != hash) {
+            return false;
+        }
+        table[slot] = new MapEntry<K, V>(key, value, hash);
+        size++;
+        return true;
+    }
+
+    /**
+     * Ends a restore. If some entries could not go back in their old slots,
+     * the ones that did may sit past gaps in their probe sequences, so
+     * every entry is placed again.
+     *
+     * @param intact
+     *            whether every entry went back in its old slot
+     */
+    void finishRestore(boolean intact) {
+        if (!intact) {
+            rehash(table.length);
+        }
+        modCount++;
+    }
+
+    /**
+     * moves every live entry into a new table, placing each by its stored
+     * hash instead of calling hashCode() and add() again
+     *
+     * @param length
+     *            length of the new table
+     */
+    private void rehash(int length) {
+        long begin = metrics == null ? 0 : System.nanoTime();
+        int oldLength = table.length;
+        moveEntries(length);
+        if (metrics != null) {
+            metrics.recordRehash(table.length != oldLength,
+                    System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * moves every live entry into a new table without recording metrics,
+     * doubling the length until every entry finds a slot
+     *
+     * @param length
+     *            length of the new table
+     */
+    @SuppressWarnings("unchecked")
+    private void moveEntries(int length) {
         MapEntry<K, V>[] tempTable = table;
-        int actSize = size;
-        table = new MapEntry[table.length * 2 + 1];
-        for (int i = 0; i < tempTable.length; i++) {
-            if (tempTable[i] != null && !tempTable[i].isRemoved()) {
-                add(tempTable[i].getKey(), tempTable[i].getValue());
+        boolean placed = false;
+        while (!placed) {
+            table = new MapEntry[length];
+            placed = true;
+            for (int i = 0; i < tempTable.length && placed; i++) {
+                if (tempTable[i] != null && !tempTable[i].isRemoved()) {
+                    placed = place(tempTable[i]);
+                }
+            }
+            length = length * 2 + 1;
+        }
+        removedCount = 0;
+        modCount++;
+    }
+
+    /**
+     * puts an entry whose key is not in the table into the first empty slot
+     * of its probe sequence
+     *
+     * @param entry
+     *            entry to place
+     * @return false if the probe sequence has no empty slot
+     */
+    private boolean place(MapEntry<K, V> entry) {
+        int ogIndex = (entry.getHash() & 0x7fffffff) % table.length;
+        int index = ogIndex;
+        for (int quadratic = 1; quadratic <= table.length; quadratic++) {
+            if (table[index] == null) {
+                table[index] = entry;
+                return true;
             }
+            index = probe(ogIndex, quadratic);
         }
-        size = actSize;
+        return false;
     }
 
     @Override
     public V remove(K key) {
-        if (key == null) {
-            throw new IllegalArgumentException("Key cannot be null");
+        int index = indexOf(key, HashMapMetrics.Operation.REMOVE);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        V inBucket = table[index].getValue();
+        removeAt(index);
+        if (removedCount > (int) (table.length * maxRemovedRatio)) {
+            compact();
         }
+        return inBucket;
+    }
 
-        int index = Math.abs(key.hashCode()) % table.length;
-        int ogIndex = index;
-        V inBucket = null;
-        int quadratic = 1;
-        boolean removed = false;
-        while (!removed) {
-            if (table[index] == null) {
-                throw new NoSuchElementException("Key Does Not Exist");
-            } else if (table[index].getKey().equals(key)) {
-                if (table[index].isRemoved()) {
-                    throw new NoSuchElementException("Key Does Not Exist");
-                } else {
-                    inBucket = table[index].getValue();
-                    table[index].setRemoved(true);
-                    removed = true;
-                }
+    /**
+     * marks the live entry at index as removed
+     *
+     * @param index
+     *            slot of the entry
+     */
+    private void removeAt(int index) {
+        table[index].setRemoved(true);
+        removedCount++;
+        size--;
+        modCount++;
+    }
+
+    @Override
+    public V get(K key) {
+        int index = indexOf(key, HashMapMetrics.Operation.GET);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return table[index].getValue();
+    }
+
+    /**
+     * Gets the value associated with the given key, or a default if the key
+     * is not in the map. Unlike get, a miss does not throw.
+     * Should run in O(1) with a good hash function, O(n) otherwise
+     *
+     * @param key the key to search for
+     * @param defaultValue value to return if the key is not in the map
+     * @throws IllegalArgumentException if key is null
+     * @return the value associated with the key, or defaultValue
+     */
+    public V getOrDefault(K key, V defaultValue) {
+        int index = indexOf(key, HashMapMetrics.Operation.GET);
+        return index == -1 ? defaultValue : table[index].getValue();
+    }
+
+    /**
+     * Finds the entry holding the given key. The entry is the one in the
+     * table, so setting its value changes the map. Do not change its key or
+     * removed status.
+     * Should run in O(1) with a good hash function, O(n) otherwise
+     *
+     * @param key the key to search for
+     * @throws IllegalArgumentException if key is null
+     * @return the entry for the key, null if the key is not in the map
+     */
+    public MapEntry<K, V> find(K key) {
+        int index = indexOf(key, HashMapMetrics.Operation.GET);
+        return index == -1 ? null : table[index];
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return indexOf(key, HashMapMetrics.Operation.GET) != -1;
+    }
+
+    /**
+     * Adds the key with the given value only if the key is not already in
+     * the map. Finds the key and its free slot in one probe sequence.
+     * Should run in O(1) with a good hash function, O(n) otherwise
+     *
+     * @param key key to add
+     * @param value value to add if the key is absent
+     * @throws IllegalArgumentException if key or value is null
+     * @return the value already associated with key, null if there was none
+     *         and value was added
+     */
+    public V putIfAbsent(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        int hash = hash(key);
+        int index = locate(key, hash, HashMapMetrics.Operation.GET,
+                HashMapMetrics.Operation.ADD);
+        if (index >= 0) {
+            return table[index].getValue();
+        }
+        putNew(index, key, value, hash);
+        return null;
+    }
+
+    /**
+     * Returns the value of key, first adding the value computed from the key
+     * if the key is absent. Finds the key and its free slot in one probe
+     * sequence.
+     * Should run in O(1) with a good hash function, O(n) otherwise
+     *
+     * @param key key to look up
+     * @param mappingFunction computes the value of an absent key, or null to
+     *            add nothing
+     * @throws IllegalArgumentException if key or mappingFunction is null
+     * @throws ConcurrentModificationException if mappingFunction changes the
+     *            map
+     * @return the current or computed value, null if the key is absent and
+     *         the function returned null
+     */
+    public V computeIfAbsent(K key,
+            Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null) {
+            throw new IllegalArgumentException(
+                    "Key or Function cannot be null");
+        }
+        int hash = hash(key);
+        int index = locate(key, hash, HashMapMetrics.Operation.GET,
+                HashMapMetrics.Operation.ADD);
+        if (index >= 0) {
+            return table[index].getValue();
+        }
+        int expectedModCount = modCount;
+        V value = mappingFunction.apply(key);
+        checkForChange(expectedModCount);
+        if (value != null) {
+            putNew(index, key, value, hash);
+        }
+        return value;
+    }
+
+    /**
+     * Computes a new value for key from its current value, or from null if
+     * the key is absent, and stores it in place. If the function returns
+     * null the key is removed. Finds the key and its free slot in one probe
+     * sequence.
+     * Should run in O(1) with a good hash function, O(n) otherwise
+     *
+     * @param key key to update
+     * @param remappingFunction computes the new value from the key and its
+     *            current value
+     * @throws IllegalArgumentException if key or remappingFunction is null
+     * @throws ConcurrentModificationException if remappingFunction changes
+     *            the map
+     * @return the new value, null if the key ends up absent
+     */
+    public V compute(K key, BiFunction<? super K, ? super V,
+            ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null) {
+            throw new IllegalArgumentException(
+                    "Key or Function cannot be null");
+        }
+        int hash = hash(key);
+        int index = locate(key, hash, HashMapMetrics.Operation.ADD,
+                HashMapMetrics.Operation.ADD);
+        V old = index >= 0 ? table[index].getValue() : null;
+        int expectedModCount = modCount;
+        V value = remappingFunction.apply(key, old);
+        checkForChange(expectedModCount);
+        update(index, key, value, hash);
+        return value;
+    }
+
+    /**
+     * Adds value for an absent key, or combines it with the current value
+     * and stores the result in place. If the function returns null the key
+     * is removed. Finds the key and its free slot in one probe sequence,
+     * which makes {@code merge(word, 1, Integer::sum)} a single-probe
+     * counter increment.
+     * Should run in O(1) with a good hash function, O(n) otherwise
+     *
+     * @param key key to update
+     * @param value value to add, or to combine with the current value
+     * @param remappingFunction combines the current value with value
+     * @throws IllegalArgumentException if key, value or remappingFunction is
+     *            null
+     * @throws ConcurrentModificationException if remappingFunction changes
+     *            the map
+     * @return the new value, null if the key ends up absent
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V,
+            ? extends V> remappingFunction) {
+        if (key == null || value == null || remappingFunction == null) {
+            throw new IllegalArgumentException(
+                    "Key, Value or Function cannot be null");
+        }
+        int hash = hash(key);
+        int index = locate(key, hash, HashMapMetrics.Operation.ADD,
+                HashMapMetrics.Operation.ADD);
+        if (index < 0) {
+            putNew(index, key, value, hash);
+            return value;
+        }
+        int expectedModCount = modCount;
+        V merged = remappingFunction.apply(table[index].getValue(), value);
+        checkForChange(expectedModCount);
+        update(index, key, merged, hash);
+        return merged;
+    }
+
+    /**
+     * applies the result of a compute or merge at the slot locate found
+     *
+     * @param located
+     *            what locate returned for key
+     * @param key
+     *            key being updated
+     * @param value
+     *            new value, null to remove the key
+     * @param hash
+     *            hash code of key
+     */
+    private void update(int located, K key, V value, int hash) {
+        if (located >= 0) {
+            if (value != null) {
+                table[located].setValue(value);
             } else {
-                index = ogIndex + quadratic * quadratic;
-                quadratic++;
-                if (index >= table.length) {
-                    int factor = index / table.length;
-                    index = index - table.length * factor;
+                removeAt(located);
+                if (removedCount > (int) (table.length * maxRemovedRatio)) {
+                    compact();
                 }
             }
+        } else if (value != null) {
+            putNew(located, key, value, hash);
         }
-        size--;
-        return inBucket;
     }
 
-    @Override
-    public V get(K key) {
+    /**
+     * @param expectedModCount
+     *            modCount before a user function was called
+     * @throws ConcurrentModificationException if the function changed the
+     *             map
+     */
+    private void checkForChange(int expectedModCount) {
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * finds the slot of the live entry holding key in a single probe
+     * sequence, without throwing on a miss
+     *
+     * @param key
+     *            key to look for
+     * @param op
+     *            kind of operation to record the probe length under
+     * @throws IllegalArgumentException if key is null
+     * @return index of the key, -1 if it is not in the map
+     */
+    private int indexOf(K key, HashMapMetrics.Operation op) {
         if (key == null) {
             throw new IllegalArgumentException("Key cannot be null");
         }
-        int index = Math.abs(key.hashCode()) % table.length;
-        int ogIndex = index;
-        V inBucket = null;
+        int hash = hash(key);
+        int ogIndex = (hash & 0x7fffffff) % table.length;
+        int index = ogIndex;
         int quadratic = 1;
-        boolean found = false;
-        while (!found) {
+        for (; quadratic <= table.length; quadratic++) {
             if (table[index] == null) {
-                throw new NoSuchElementException("Key Does Not Exist");
-            } else if (table[index].getKey().equals(key)) {
-                if (table[index].isRemoved()) {
-                    throw new NoSuchElementException("Key Does Not Exist");
-                } else {
-                    inBucket = table[index].getValue();
-                    found = true;
-                }
-            } else {
-                index = ogIndex + quadratic * quadratic;
-                quadratic++;
-                if (index >= table.length) {
-                    int factor = index / table.length;
-                    index = index - table.length * factor;
+                break;
+            } else if (!table[index].isRemoved()
+                    && table[index].getHash() == hash
+                    && table[index].getKey().equals(key)) {
+                if (metrics != null) {
+                    metrics.recordProbes(op, quadratic);
                 }
+                return index;
             }
+            index = probe(ogIndex, quadratic);
         }
-        return inBucket;
+        if (metrics != null) {
+            metrics.recordProbes(op, Math.min(quadratic, table.length));
+        }
+        return -1;
+    }
 
+    /**
+     * finds the next slot on the quadratic probe sequence
+     *
+     * @param ogIndex
+     *            original hash index
+     * @param quadratic
+     *            current quadratic that is being added
+     * @return the index of the next slot on the probe sequence
+     */
+    private int probe(int ogIndex, int quadratic) {
+        return (int) ((ogIndex + (long) quadratic * quadratic) % table.length);
     }
 
-    @Override
-    public boolean contains(K key) {
-        try {
-            get(key);
-            return true;
-        } catch (NoSuchElementException e) {
-            return false;
+    /**
+     * Starts recording probe lengths and rehashes, from counters of 0. While
+     * metrics are disabled, which is the default, every operation only pays
+     * for one null check.
+     */
+    public void enableMetrics() {
+        metrics = new HashMapMetrics();
+    }
+
+    /**
+     * Stops recording and drops the counters.
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * Takes a copy of the recorded metrics along with the current slot
+     * counts and load factor of the table.
+     *
+     * @throws IllegalStateException if metrics are not enabled
+     * @return snapshot of the metrics
+     */
+    public HashMapMetrics.Snapshot metrics() {
+        if (metrics == null) {
+            throw new IllegalStateException("Metrics are not enabled");
         }
+        return metrics.snapshot(table.length, size, removedCount);
     }
 
     @Override
     public void clear() {
         table = new MapEntry[STARTING_SIZE];
         size = 0;
+        removedCount = 0;
+        modCount++;
     }
 
     @Override
@@ -225,26 +866,731 @@ public class HashMap<K, V> implements HashMapInterface<K, V> {
         return table;
     }
 
+    /**
+     * Returns a live view of the keys in this map. Nothing is copied; the
+     * view reads the table as it is used. Removing through the view or its
+     * iterator removes from the map. Changing the map in any other way while
+     * iterating makes the iterator throw a
+     * {@code java.util.ConcurrentModificationException}.
+     * Should be O(1)
+     *
+     * @return set view of the keys in this map
+     */
     @Override
     public Set<K> keySet() {
-        HashSet<K> keys = new HashSet<K>();
-        for (int i = 0; i < table.length; i++) {
-            if (table[i] != null && !table[i].isRemoved()) {
-                keys.add(table[i].getKey());
-            }
-        }
-        return keys;
+        return new KeySet();
     }
 
+    /**
+     * Returns a live view of the values in this map, in table order. Nothing
+     * is copied; the view reads the table as it is used, so get(int) walks
+     * the table and is O(n). Values can be set and removed through its list
+     * iterator but not added. Changing the map in any other way while
+     * iterating makes the iterator throw a
+     * {@code java.util.ConcurrentModificationException}.
+     * Should be O(1)
+     *
+     * @return list view of the values in this map
+     */
     @Override
     public List<V> values() {
-        LinkedList<V> vals = new LinkedList<V>();
-        for (int i = 0; i < table.length; i++) {
-            if (table[i] != null && !table[i].isRemoved()) {
-                vals.add(table[i].getValue());
+        return new Values();
+    }
+
+    /**
+     * Returns an iterator over the live entries, in table order. The entries
+     * are the ones in the table, so setting a value changes the map. Do not
+     * change an entry's key or removed status; use the iterator's remove.
+     *
+     * @return iterator over the entries of this map
+     */
+    public Iterator<MapEntry<K, V>> entryIterator() {
+        return new EntryIterator();
+    }
+
+    /**
+     * Runs action on every key and value, walking the table directly.
+     * Should be O(n)
+     *
+     * @param action what to run on each key and value
+     * @throws IllegalArgumentException if action is null
+     * @throws java.util.ConcurrentModificationException if action changes
+     *            the map
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+        int expectedModCount = modCount;
+        MapEntry<K, V>[] tab = table;
+        for (int i = 0; i < tab.length; i++) {
+            if (tab[i] != null && !tab[i].isRemoved()) {
+                action.accept(tab[i].getKey(), tab[i].getValue());
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a spliterator over the live entries that splits by halving the
+     * range of table slots it covers, so a parallel stream hands each thread
+     * a part of the table to walk directly.
+     *
+     * @return spliterator over the entries of this map
+     */
+    public Spliterator<MapEntry<K, V>> spliterator() {
+        return new TableSpliterator(table, 0, table.length, size, modCount);
+    }
+
+    /**
+     * Returns a stream of the live entries. Call {@code parallel()} on it to
+     * split the work over the table.
+     *
+     * @return stream of the entries of this map
+     */
+    public Stream<MapEntry<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Runs action on every key and value using fork/join. The table is split
+     * in halves until a part is expected to hold no more than threshold
+     * entries, and the parts run in the fork/join pool of the calling thread,
+     * or the common pool. action may run on many threads at once and must not
+     * change the map.
+     *
+     * @param threshold most entries a part may hold before it is split, 1 or
+     *            more
+     * @param action what to run on each key and value
+     * @throws IllegalArgumentException if threshold is not positive or action
+     *            is null
+     * @throws java.util.ConcurrentModificationException if the map changed
+     *            while running
+     */
+    public void parallelForEach(long threshold,
+            BiConsumer<? super K, ? super V> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+        checkThreshold(threshold);
+        int expectedModCount = modCount;
+        new ForEachTask(table, 0, table.length, threshold, action).invoke();
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Transforms every key and value and combines the non null results using
+     * fork/join, splitting the table the same way as parallelForEach.
+     * reducer must be associative, since the order parts are combined in is
+     * not fixed.
+     *
+     * @param threshold most entries a part may hold before it is split, 1 or
+     *            more
+     * @param transformer turns a key and value into a result, or null to
+     *            skip the entry
+     * @param reducer combines two results
+     * @param <U> type of the results
+     * @throws IllegalArgumentException if threshold is not positive or a
+     *            function is null
+     * @throws java.util.ConcurrentModificationException if the map changed
+     *            while running
+     * @return all results combined, null if there were none
+     */
+    public <U> U parallelReduce(long threshold,
+            BiFunction<? super K, ? super V, ? extends U> transformer,
+            BinaryOperator<U> reducer) {
+        if (transformer == null || reducer == null) {
+            throw new IllegalArgumentException("Functions cannot be null");
+        }
+        checkThreshold(threshold);
+        int expectedModCount = modCount;
+        U result = new ReduceTask<U>(table, 0, table.length, threshold,
+                transformer, reducer).invoke();
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return result;
+    }
+
+    /**
+     * Applies search to keys and values using fork/join until one call
+     * returns non null, splitting the table the same way as
+     * parallelForEach. Once a result is found the other parts stop early.
+     * If several entries match, any one of their results may be returned.
+     *
+     * @param threshold most entries a part may hold before it is split, 1 or
+     *            more
+     * @param search returns a result for a matching entry, null otherwise
+     * @param <U> type of the result
+     * @throws IllegalArgumentException if threshold is not positive or search
+     *            is null
+     * @throws java.util.ConcurrentModificationException if the map changed
+     *            while running
+     * @return a non null result of search, null if no entry matched
+     */
+    public <U> U parallelSearch(long threshold,
+            BiFunction<? super K, ? super V, ? extends U> search) {
+        if (search == null) {
+            throw new IllegalArgumentException("Search cannot be null");
+        }
+        checkThreshold(threshold);
+        int expectedModCount = modCount;
+        AtomicReference<U> found = new AtomicReference<U>();
+        new SearchTask<U>(table, 0, table.length, threshold, search, found)
+                .invoke();
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return found.get();
+    }
+
+    /**
+     * @param threshold
+     *            parallelism threshold to check
+     * @throws IllegalArgumentException if threshold is not positive
+     */
+    private static void checkThreshold(long threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive");
+        }
+    }
+
+    /**
+     * @param tab
+     *            table being walked
+     * @param length
+     *            number of slots in a range of tab
+     * @return number of entries the range is expected to hold
+     */
+    private long expectedEntries(MapEntry<K, V>[] tab, int length) {
+        return (long) length * size / tab.length;
+    }
+
+    /**
+     * Spliterator over a range of slots of one table.
+     */
+    private final class TableSpliterator
+            implements Spliterator<MapEntry<K, V>> {
+        private final MapEntry<K, V>[] tab;
+        // next slot to look at
+        private int origin;
+        private final int fence;
+        private long estimate;
+        private final int expectedModCount;
+
+        /**
+         * @param tab
+         *            table to walk
+         * @param origin
+         *            first slot covered
+         * @param fence
+         *            one past the last slot covered
+         * @param estimate
+         *            expected number of entries in the range
+         * @param expectedModCount
+         *            modCount when the walk started
+         */
+        TableSpliterator(MapEntry<K, V>[] tab, int origin, int fence,
+                long estimate, int expectedModCount) {
+            this.tab = tab;
+            this.origin = origin;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super MapEntry<K, V>> action) {
+            if (action == null) {
+                throw new IllegalArgumentException("Action cannot be null");
+            }
+            while (origin < fence) {
+                MapEntry<K, V> entry = tab[origin++];
+                if (entry != null && !entry.isRemoved()) {
+                    action.accept(entry);
+                    checkForChange();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(
+                Consumer<? super MapEntry<K, V>> action) {
+            if (action == null) {
+                throw new IllegalArgumentException("Action cannot be null");
+            }
+            for (; origin < fence; origin++) {
+                MapEntry<K, V> entry = tab[origin];
+                if (entry != null && !entry.isRemoved()) {
+                    action.accept(entry);
+                }
+            }
+            checkForChange();
+        }
+
+        @Override
+        public Spliterator<MapEntry<K, V>> trySplit() {
+            int mid = (origin + fence) >>> 1;
+            if (mid <= origin) {
+                return null;
+            }
+            estimate >>>= 1;
+            TableSpliterator prefix = new TableSpliterator(tab, origin, mid,
+                    estimate, expectedModCount);
+            origin = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the map changed since
+         *             the walk started
+         */
+        private void checkForChange() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
         }
-        return vals;
     }
 
+    /**
+     * Fork/join action behind parallelForEach.
+     */
+    private final class ForEachTask extends RecursiveAction {
+        private final MapEntry<K, V>[] tab;
+        private final int lo;
+        private final int hi;
+        private final long threshold;
+        private final BiConsumer<? super K, ? super V> action;
+
+        /**
+         * @param tab
+         *            table to walk
+         * @param lo
+         *            first slot covered
+         * @param hi
+         *            one past the last slot covered
+         * @param threshold
+         *            most entries to handle without splitting
+         * @param action
+         *            what to run on each key and value
+         */
+        ForEachTask(MapEntry<K, V>[] tab, int lo, int hi, long threshold,
+                BiConsumer<? super K, ? super V> action) {
+            this.tab = tab;
+            this.lo = lo;
+            this.hi = hi;
+            this.threshold = threshold;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1 && expectedEntries(tab, hi - lo) > threshold) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ForEachTask(tab, lo, mid, threshold, action),
+                        new ForEachTask(tab, mid, hi, threshold, action));
+                return;
+            }
+            for (int i = lo; i < hi; i++) {
+                if (tab[i] != null && !tab[i].isRemoved()) {
+                    action.accept(tab[i].getKey(), tab[i].getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Fork/join task behind parallelReduce.
+     */
+    private final class ReduceTask<U> extends RecursiveTask<U> {
+        private final MapEntry<K, V>[] tab;
+        private final int lo;
+        private final int hi;
+        private final long threshold;
+        private final BiFunction<? super K, ? super V, ? extends U>
+                transformer;
+        private final BinaryOperator<U> reducer;
+
+        /**
+         * @param tab
+         *            table to walk
+         * @param lo
+         *            first slot covered
+         * @param hi
+         *            one past the last slot covered
+         * @param threshold
+         *            most entries to handle without splitting
+         * @param transformer
+         *            turns a key and value into a result
+         * @param reducer
+         *            combines two results
+         */
+        ReduceTask(MapEntry<K, V>[] tab, int lo, int hi, long threshold,
+                BiFunction<? super K, ? super V, ? extends U> transformer,
+                BinaryOperator<U> reducer) {
+            this.tab = tab;
+            this.lo = lo;
+            this.hi = hi;
+            this.threshold = threshold;
+            this.transformer = transformer;
+            this.reducer = reducer;
+        }
+
+        @Override
+        protected U compute() {
+            if (hi - lo > 1 && expectedEntries(tab, hi - lo) > threshold) {
+                int mid = (lo + hi) >>> 1;
+                ReduceTask<U> left = new ReduceTask<U>(tab, lo, mid,
+                        threshold, transformer, reducer);
+                left.fork();
+                U right = new ReduceTask<U>(tab, mid, hi, threshold,
+                        transformer, reducer).compute();
+                return combine(left.join(), right);
+            }
+            U result = null;
+            for (int i = lo; i < hi; i++) {
+                if (tab[i] != null && !tab[i].isRemoved()) {
+                    result = combine(result,
+                            transformer.apply(tab[i].getKey(),
+                                    tab[i].getValue()));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @param a
+         *            a result, or null
+         * @param b
+         *            another result, or null
+         * @return both combined, skipping nulls
+         */
+        private U combine(U a, U b) {
+            if (a == null) {
+                return b;
+            }
+            return b == null ? a : reducer.apply(a, b);
+        }
+    }
+
+    /**
+     * Fork/join action behind parallelSearch.
+     */
+    private final class SearchTask<U> extends RecursiveAction {
+        private final MapEntry<K, V>[] tab;
+        private final int lo;
+        private final int hi;
+        private final long threshold;
+        private final BiFunction<? super K, ? super V, ? extends U> search;
+        private final AtomicReference<U> found;
+
+        /**
+         * @param tab
+         *            table to walk
+         * @param lo
+         *            first slot covered
+         * @param hi
+         *            one past the last slot covered
+         * @param threshold
+         *            most entries to handle without splitting
+         * @param search
+         *            returns a result for a matching entry
+         * @param found
+         *            holds the first result found by any task
+         */
+        SearchTask(MapEntry<K, V>[] tab, int lo, int hi, long threshold,
+                BiFunction<? super K, ? super V, ? extends U> search,
+                AtomicReference<U> found) {
+            this.tab = tab;
+            this.lo = lo;
+            this.hi = hi;
+            this.threshold = threshold;
+            this.search = search;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (found.get() != null) {
+                return;
+            }
+            if (hi - lo > 1 && expectedEntries(tab, hi - lo) > threshold) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new SearchTask<U>(tab, lo, mid, threshold, search,
+                        found), new SearchTask<U>(tab, mid, hi, threshold,
+                        search, found));
+                return;
+            }
+            for (int i = lo; i < hi && found.get() == null; i++) {
+                if (tab[i] != null && !tab[i].isRemoved()) {
+                    U result = search.apply(tab[i].getKey(),
+                            tab[i].getValue());
+                    if (result != null) {
+                        found.compareAndSet(null, result);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the live entries of the table in order.
+     */
+    private abstract class TableIterator<T> implements Iterator<T> {
+        // next slot to look at
+        private int cursor;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            checkForChange();
+            while (cursor < table.length
+                    && (table[cursor] == null || table[cursor].isRemoved())) {
+                cursor++;
+            }
+            return cursor < table.length;
+        }
+
+        /**
+         * @return the next live entry
+         */
+        MapEntry<K, V> nextEntry() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more entries");
+            }
+            lastReturned = cursor++;
+            return table[lastReturned];
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == -1) {
+                throw new IllegalStateException("Nothing to remove");
+            }
+            checkForChange();
+            removeAt(lastReturned);
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the map changed other
+         *             than through this iterator
+         */
+        private void checkForChange() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Iterator over the entries.
+     */
+    private final class EntryIterator extends TableIterator<MapEntry<K, V>> {
+        @Override
+        public MapEntry<K, V> next() {
+            return nextEntry();
+        }
+    }
+
+    /**
+     * Iterator over the keys.
+     */
+    private final class KeyIterator extends TableIterator<K> {
+        @Override
+        public K next() {
+            return nextEntry().getKey();
+        }
+    }
+
+    /**
+     * Set view of the keys, backed by the table.
+     */
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            try {
+                return o != null
+                        && indexOf((K) o, HashMapMetrics.Operation.GET) != -1;
+            } catch (ClassCastException e) {
+                return false;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            removeAt(indexOf((K) o, HashMapMetrics.Operation.REMOVE));
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            HashMap.this.clear();
+        }
+    }
+
+    /**
+     * List view of the values, backed by the table.
+     */
+    private final class Values extends AbstractSequentialList<V> {
+        @Override
+        public ListIterator<V> listIterator(int index) {
+            if (index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            ValueIterator it = new ValueIterator();
+            for (int i = 0; i < index; i++) {
+                it.next();
+            }
+            return it;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            HashMap.this.clear();
+        }
+    }
+
+    /**
+     * List iterator over the values, moving through the table in either
+     * direction.
+     */
+    private final class ValueIterator implements ListIterator<V> {
+        // slot the next call to next starts looking from
+        private int cursor;
+        // number of values before the cursor
+        private int position;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        @Override
+        public V next() {
+            checkForChange();
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more values");
+            }
+            while (table[cursor] == null || table[cursor].isRemoved()) {
+                cursor++;
+            }
+            lastReturned = cursor++;
+            position++;
+            return table[lastReturned].getValue();
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return position > 0;
+        }
+
+        @Override
+        public V previous() {
+            checkForChange();
+            if (!hasPrevious()) {
+                throw new NoSuchElementException("No previous value");
+            }
+            cursor--;
+            while (table[cursor] == null || table[cursor].isRemoved()) {
+                cursor--;
+            }
+            lastReturned = cursor;
+            position--;
+            return table[lastReturned].getValue();
+        }
+
+        @Override
+        public int nextIndex() {
+            return position;
+        }
+
+        @Override
+        public int previousIndex() {
+            return position - 1;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == -1) {
+                throw new IllegalStateException("Nothing to remove");
+            }
+            checkForChange();
+            removeAt(lastReturned);
+            if (lastReturned < cursor) {
+                position--;
+            }
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void set(V value) {
+            if (lastReturned == -1) {
+                throw new IllegalStateException("Nothing to set");
+            }
+            if (value == null) {
+                throw new IllegalArgumentException("Value cannot be null");
+            }
+            checkForChange();
+            table[lastReturned].setValue(value);
+        }
+
+        @Override
+        public void add(V value) {
+            throw new UnsupportedOperationException(
+                    "Values cannot be added without a key");
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the map changed other
+         *             than through this iterator
+         */
+        private void checkForChange() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
 }
@@ -0,0 +1,536 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+/**
+ * Rough wall-clock benchmarks for the hash maps in this directory. Run with
+ * the name of a benchmark, for example {@code java HashMapBenchmark
+ * concurrent}. Every benchmark runs a warm up pass before the timed passes,
+ * so the numbers are for compiled code, but they are still only a guide.
+ *
+ * @version 1.0
+ */
+public class HashMapBenchmark {
+    private static final int KEY_RANGE = 1 << 16;
+    private static final int OPS_PER_THREAD = 2000000;
+
+    /**
+     * Runs the benchmark named by the first argument.
+     *
+     * @param args name of the benchmark to run, then any arguments it takes
+     * @throws InterruptedException if a benchmark thread is interrupted
+     * @throws ExecutionException if a benchmark task fails
+     * @throws IOException if a benchmark cannot use its temporary files
+     */
+    public static void main(String[] args) throws InterruptedException,
+        ExecutionException, IOException {
+        if (args.length == 0) {
+            System.out.println("usage: java HashMapBenchmark <benchmark>");
+            System.out.println(
+                    "benchmarks: concurrent, capacity, load, parallel, "
+                    + "swiss, wordcount, flood, snapshot [entries]");
+            return;
+        }
+        switch (args[0]) {
+        case "concurrent":
+            concurrent();
+            break;
+        case "capacity":
+            capacity();
+            break;
+        case "load":
+            load();
+            break;
+        case "parallel":
+            parallel();
+            break;
+        case "swiss":
+            swiss();
+            break;
+        case "wordcount":
+            wordCount();
+            break;
+        case "flood":
+            flood();
+            break;
+        case "snapshot":
+            snapshot(args.length > 1 ? Integer.parseInt(args[1]) : 10000000);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown benchmark " + args[0]);
+        }
+    }
+
+    /**
+     * Compares a HashMap behind one global lock with a
+     * ConcurrentStripedHashMap on a 90% read, 10% write mix, from one thread
+     * up to twice the number of cores.
+     *
+     * @throws InterruptedException if a benchmark thread is interrupted
+     */
+    private static void concurrent() throws InterruptedException {
+        int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+        runConcurrent(new HashMap<Integer, Integer>(), true, maxThreads);
+        runConcurrent(new ConcurrentStripedHashMap<Integer, Integer>(), false,
+                maxThreads);
+        System.out.println("threads\tglobal lock ops/ms\tstriped ops/ms");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long locked = runConcurrent(new HashMap<Integer, Integer>(), true,
+                    threads);
+            long striped = runConcurrent(
+                    new ConcurrentStripedHashMap<Integer, Integer>(), false,
+                    threads);
+            System.out.println(threads + "\t" + locked + "\t" + striped);
+        }
+    }
+
+    /**
+     * @param map
+     *            map to run against, filled with half the key range first
+     * @param globalLock
+     *            true to wrap every call in {@code synchronized (map)}
+     * @param threads
+     *            number of threads to run at once
+     * @return operations per millisecond across all threads
+     * @throws InterruptedException if a benchmark thread is interrupted
+     */
+    private static long runConcurrent(final HashMapInterface<Integer,
+            Integer> map, final boolean globalLock, int threads)
+        throws InterruptedException {
+        for (int i = 0; i < KEY_RANGE; i += 2) {
+            map.add(i, i);
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        Integer key = random.nextInt(KEY_RANGE);
+                        boolean write = random.nextInt(10) == 0;
+                        if (globalLock) {
+                            synchronized (map) {
+                                apply(map, key, write);
+                            }
+                        } else {
+                            apply(map, key, write);
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long millis = Math.max(1, (System.nanoTime() - begin) / 1000000);
+        return (long) threads * OPS_PER_THREAD / millis;
+    }
+
+    /**
+     * Compares the odd capacity, modulo indexed HashMap with the power of
+     * two, masked PowerOfTwoHashMap on String and Integer keys.
+     */
+    private static void capacity() {
+        int count = 1000000;
+        Integer[] ints = new Integer[count];
+        String[] strings = new String[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            ints[i] = random.nextInt();
+            strings[i] = "key-" + random.nextLong();
+        }
+        long intOdd = bestOf(new HashMap<Integer, Integer>(), ints);
+        long intPow = bestOf(new PowerOfTwoHashMap<Integer, Integer>(), ints);
+        long strOdd = bestOf(new HashMap<String, String>(), strings);
+        long strPow = bestOf(new PowerOfTwoHashMap<String, String>(), strings);
+        System.out.println("keys\tHashMap ms\tPowerOfTwoHashMap ms");
+        System.out.println("Integer\t" + intOdd + "\t" + intPow);
+        System.out.println("String\t" + strOdd + "\t" + strPow);
+    }
+
+    /**
+     * Compares loading a HashMap one add at a time from the default size,
+     * one add at a time into a pre-sized table, and with addAll.
+     */
+    private static void load() {
+        int count = 5000000;
+        Integer[] keys = new Integer[count];
+        java.util.HashMap<Integer, Integer> source =
+                new java.util.HashMap<Integer, Integer>(count * 2);
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            keys[i] = random.nextInt();
+            source.put(keys[i], keys[i]);
+        }
+        long grown = Long.MAX_VALUE;
+        long presized = Long.MAX_VALUE;
+        long bulk = Long.MAX_VALUE;
+        for (int pass = 0; pass < 5; pass++) {
+            long begin = System.nanoTime();
+            HashMap<Integer, Integer> map = new HashMap<Integer, Integer>();
+            for (Integer key : keys) {
+                map.add(key, key);
+            }
+            grown = Math.min(grown, System.nanoTime() - begin);
+
+            begin = System.nanoTime();
+            map = HashMap.withExpectedSize(count);
+            for (Integer key : keys) {
+                map.add(key, key);
+            }
+            presized = Math.min(presized, System.nanoTime() - begin);
+
+            begin = System.nanoTime();
+            map = new HashMap<Integer, Integer>();
+            map.addAll(source);
+            bulk = Math.min(bulk, System.nanoTime() - begin);
+        }
+        System.out.println("default size ms\tpre-sized ms\taddAll ms");
+        System.out.println(grown / 1000000 + "\t" + presized / 1000000 + "\t"
+                + bulk / 1000000);
+    }
+
+    /**
+     * Sums the values of a large HashMap with parallelReduce and with a
+     * parallel stream, in fork/join pools of 1 up to the number of cores.
+     *
+     * @throws InterruptedException if a benchmark thread is interrupted
+     * @throws ExecutionException if a benchmark task fails
+     */
+    private static void parallel() throws InterruptedException,
+        ExecutionException {
+        int count = 4000000;
+        final HashMap<Integer, Long> map = HashMap.withExpectedSize(count);
+        for (int i = 0; i < count; i++) {
+            map.add(i, (long) i);
+        }
+        System.out.println("threads\tparallelReduce ms\tparallel stream ms");
+        int cores = Runtime.getRuntime().availableProcessors();
+        // doubles up to the number of cores, ending on it even when it is not
+        // a power of two
+        for (int threads = 1;; threads = Math.min(threads * 2, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long reduce = Long.MAX_VALUE;
+            long stream = Long.MAX_VALUE;
+            for (int pass = 0; pass < 5; pass++) {
+                long begin = System.nanoTime();
+                pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        return map.parallelReduce(10000,
+                                new BiFunction<Integer, Long, Long>() {
+                                    @Override
+                                    public Long apply(Integer k, Long v) {
+                                        return v;
+                                    }
+                                }, new BinaryOperator<Long>() {
+                                    @Override
+                                    public Long apply(Long a, Long b) {
+                                        return a + b;
+                                    }
+                                });
+                    }
+                }).get();
+                reduce = Math.min(reduce, System.nanoTime() - begin);
+
+                begin = System.nanoTime();
+                pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        return map.stream().parallel()
+                                .mapToLong(e -> e.getValue()).sum();
+                    }
+                }).get();
+                stream = Math.min(stream, System.nanoTime() - begin);
+            }
+            pool.shutdown();
+            System.out.println(threads + "\t" + reduce / 1000000 + "\t"
+                    + stream / 1000000);
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Compares HashMap with SwissHashMap on adding and getting String keys,
+     * and on looking up keys that are not in the map.
+     */
+    private static void swiss() {
+        int count = 1000000;
+        String[] keys = new String[count];
+        String[] missing = new String[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            keys[i] = "key-" + random.nextLong();
+            missing[i] = "missing-" + random.nextLong();
+        }
+        HashMap<String, String> hashMap = new HashMap<String, String>();
+        SwissHashMap<String, String> swiss = new SwissHashMap<String, String>();
+        long hashHits = bestOf(hashMap, keys);
+        long swissHits = bestOf(swiss, keys);
+        long hashMisses = missesOf(hashMap, missing);
+        long swissMisses = missesOf(swiss, missing);
+        System.out.println("\tHashMap ms\tSwissHashMap ms");
+        System.out.println("add+get\t" + hashHits + "\t" + swissHits);
+        System.out.println("misses\t" + hashMisses + "\t" + swissMisses);
+    }
+
+    /**
+     * Counts words drawn from a skewed vocabulary, comparing the
+     * contains/get/add pattern with merge and compute, which find the key
+     * once and update it in place.
+     */
+    private static void wordCount() {
+        int vocabulary = 50000;
+        int count = 5000000;
+        String[] words = new String[vocabulary];
+        for (int i = 0; i < vocabulary; i++) {
+            words[i] = "word" + i;
+        }
+        String[] text = new String[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            // squaring a uniform draw skews the text toward the first words
+            double u = random.nextDouble();
+            text[i] = words[(int) (u * u * vocabulary)];
+        }
+        BiFunction<Integer, Integer, Integer> sum =
+                new BiFunction<Integer, Integer, Integer>() {
+                    @Override
+                    public Integer apply(Integer a, Integer b) {
+                        return a + b;
+                    }
+                };
+        BiFunction<String, Integer, Integer> increment =
+                new BiFunction<String, Integer, Integer>() {
+                    @Override
+                    public Integer apply(String word, Integer old) {
+                        return old == null ? 1 : old + 1;
+                    }
+                };
+        long threeCalls = Long.MAX_VALUE;
+        long merge = Long.MAX_VALUE;
+        long compute = Long.MAX_VALUE;
+        for (int pass = 0; pass < 5; pass++) {
+            long begin = System.nanoTime();
+            HashMap<String, Integer> counts = new HashMap<String, Integer>();
+            for (String word : text) {
+                if (counts.contains(word)) {
+                    counts.add(word, counts.get(word) + 1);
+                } else {
+                    counts.add(word, 1);
+                }
+            }
+            threeCalls = Math.min(threeCalls, System.nanoTime() - begin);
+
+            begin = System.nanoTime();
+            counts = new HashMap<String, Integer>();
+            for (String word : text) {
+                counts.merge(word, 1, sum);
+            }
+            merge = Math.min(merge, System.nanoTime() - begin);
+
+            begin = System.nanoTime();
+            counts = new HashMap<String, Integer>();
+            for (String word : text) {
+                counts.compute(word, increment);
+            }
+            compute = Math.min(compute, System.nanoTime() - begin);
+        }
+        System.out.println("contains/get/add ms\tmerge ms\tcompute ms");
+        System.out.println(threeCalls / 1000000 + "\t" + merge / 1000000
+                + "\t" + compute / 1000000);
+    }
+
+    /**
+     * Adds Strings that all share one hashCode(), built from the colliding
+     * blocks "Aa" and "BB", and the same number of ordinary Strings. Compares
+     * HashMap, which switches to randomized hashing once probes get long,
+     * with PowerOfTwoHashMap, which keeps using String.hashCode().
+     */
+    private static void flood() {
+        int count = 1 << 13;
+        String[] colliding = new String[count];
+        String[] ordinary = new String[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int bit = 0; bit < 13; bit++) {
+                key.append(((i >> bit) & 1) == 0 ? "Aa" : "BB");
+            }
+            colliding[i] = key.toString();
+            ordinary[i] = "key-" + random.nextLong();
+        }
+        System.out.println("keys\tHashMap ms\tPowerOfTwoHashMap ms");
+        System.out.println("ordinary\t"
+                + bestOf(new HashMap<String, String>(), ordinary) + "\t"
+                + bestOf(new PowerOfTwoHashMap<String, String>(), ordinary));
+        System.out.println("colliding\t"
+                + bestOf(new HashMap<String, String>(), colliding) + "\t"
+                + bestOf(new PowerOfTwoHashMap<String, String>(), colliding));
+    }
+
+    /**
+     * Times writing a map of Integers with HashMapSnapshot and reading it
+     * back, against writing every key and value from keySet() with Java
+     * serialization and adding them back one at a time. Needs a large heap
+     * at the default 10 million entries, for example {@code -Xmx4g}.
+     *
+     * @param count number of entries in the map
+     * @throws IOException if the temporary files cannot be used
+     */
+    private static void snapshot(int count) throws IOException {
+        HashMap<Integer, Integer> map = HashMap.withExpectedSize(count);
+        Random random = new Random(42);
+        while (map.size() < count) {
+            int key = random.nextInt();
+            map.add(key, key);
+        }
+        Path file = Files.createTempFile("snapshot", ".bin");
+        try {
+            long begin = System.nanoTime();
+            HashMapSnapshot.write(map, file, Serializers.INTEGER,
+                    Serializers.INTEGER);
+            long snapshotWrite = System.nanoTime() - begin;
+            long snapshotBytes = Files.size(file);
+            begin = System.nanoTime();
+            HashMap<Integer, Integer> restored = HashMapSnapshot.read(file,
+                    Serializers.INTEGER, Serializers.INTEGER);
+            long snapshotRead = System.nanoTime() - begin;
+            if (restored.size() != count) {
+                throw new IllegalStateException("Restored the wrong size");
+            }
+            restored = null;
+
+            begin = System.nanoTime();
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(map.size());
+                int written = 0;
+                for (Integer key : map.keySet()) {
+                    out.writeObject(key);
+                    out.writeObject(map.get(key));
+                    // keeps the stream from remembering every object
+                    if (++written % 1024 == 0) {
+                        out.reset();
+                    }
+                }
+            }
+            long javaWrite = System.nanoTime() - begin;
+            long javaBytes = Files.size(file);
+            map = null;
+            begin = System.nanoTime();
+            try (ObjectInputStream in = new ObjectInputStream(
+                    new BufferedInputStream(Files.newInputStream(file)))) {
+                int size = in.readInt();
+                restored = new HashMap<Integer, Integer>();
+                for (int i = 0; i < size; i++) {
+                    restored.add((Integer) in.readObject(),
+                            (Integer) in.readObject());
+                }
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            long javaRead = System.nanoTime() - begin;
+
+            System.out.println("format\twrite ms\tread ms\tMB");
+            System.out.println("snapshot\t" + snapshotWrite / 1000000 + "\t"
+                    + snapshotRead / 1000000 + "\t" + (snapshotBytes >> 20));
+            System.out.println("java\t" + javaWrite / 1000000 + "\t"
+                    + javaRead / 1000000 + "\t" + (javaBytes >> 20));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Looks up keys that are not in the map, a few times over.
+     *
+     * @param map
+     *            map to run against, already filled
+     * @param keys
+     *            keys that are not in the map
+     * @param <K>
+     *            type of the keys
+     * @return milliseconds taken by the fastest pass
+     */
+    private static <K> long missesOf(HashMapInterface<K, K> map, K[] keys) {
+        long best = Long.MAX_VALUE;
+        for (int pass = 0; pass < 5; pass++) {
+            long begin = System.nanoTime();
+            for (K key : keys) {
+                if (map.contains(key)) {
+                    throw new IllegalStateException("Unexpected hit " + key);
+                }
+            }
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        return best / 1000000;
+    }
+
+    /**
+     * Adds every key and then gets every key, a few times over.
+     *
+     * @param map
+     *            map to run against, cleared before each pass
+     * @param keys
+     *            keys to add, each mapped to itself
+     * @param <K>
+     *            type of the keys
+     * @return milliseconds taken by the fastest pass
+     */
+    private static <K> long bestOf(HashMapInterface<K, K> map, K[] keys) {
+        long best = Long.MAX_VALUE;
+        for (int pass = 0; pass < 5; pass++) {
+            map.clear();
+            long begin = System.nanoTime();
+            for (K key : keys) {
+                map.add(key, key);
+            }
+            for (K key : keys) {
+                map.get(key);
+            }
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        return best / 1000000;
+    }
+
+    /**
+     * @param map
+     *            map to run against
+     * @param key
+     *            key to read or write
+     * @param write
+     *            true to add key, false to look it up
+     */
+    private static void apply(HashMapInterface<Integer, Integer> map,
+            Integer key, boolean write) {
+        if (write) {
+            map.add(key, key);
+        } else if (map.contains(key)) {
+            map.get(key);
+        }
+    }
+}
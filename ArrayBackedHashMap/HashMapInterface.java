@@ -77,8 +77,8 @@ public interface HashMapInterface<K, V> {
 
     /**
      * Returns a Set view of the keys contained in this map.
-     * Use {@code java.util.HashSet}.
-     * Should be O(n)
+     * Either copy the keys into a {@code java.util.HashSet}, which should be
+     * O(n), or return a view backed by the table.
      *
      * @return set of keys in this map
      */
@@ -86,10 +86,10 @@ public interface HashMapInterface<K, V> {
 
     /**
      * Returns a List view of the values contained in this map.
-     * Use any class that implements the List interface
-     * This includes {@code java.util.ArrayList} and
-     * {@code java.util.LinkedList}.
-     * Should be O(n)
+     * Either copy the values into any class that implements the List
+     * interface, such as {@code java.util.ArrayList} and
+     * {@code java.util.LinkedList}, which should be O(n), or return a view
+     * backed by the table.
      *
      * @return list of values in this map
      */
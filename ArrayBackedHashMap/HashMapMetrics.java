@@ -0,0 +1,289 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counters a HashMap keeps while metrics are enabled on it: a histogram of
+ * probe lengths for each kind of operation, and how many times and for how
+ * long the table has been rehashed. A probe length is the number of slots an
+ * operation looked at before it found its key or gave up.
+ *
+ * Only the map records into these counters. Readers take a {@link Snapshot}
+ * through the map, which also captures the state of the table.
+ *
+ * @version 1.0
+ */
+public final class HashMapMetrics {
+    // probe lengths of this many slots or more share the last bucket
+    public static final int MAX_EXACT_PROBES = 32;
+
+    /**
+     * Kinds of operation a probe length is recorded for. GET covers every
+     * lookup that does not change the map, such as contains and find.
+     */
+    public enum Operation {
+        GET, ADD, REMOVE
+    }
+
+    private final long[][] histograms =
+            new long[Operation.values().length][MAX_EXACT_PROBES + 1];
+    private final long[] maxProbes = new long[Operation.values().length];
+    private long resizes;
+    private long compactions;
+    private long rekeys;
+    private long rehashNanos;
+
+    /**
+     * Create a set of counters that are all 0.
+     */
+    HashMapMetrics() {
+    }
+
+    /**
+     * Counts one operation that looked at the given number of slots.
+     *
+     * @param op kind of operation
+     * @param probes number of slots looked at
+     */
+    void recordProbes(Operation op, int probes) {
+        histograms[op.ordinal()][Math.min(probes, MAX_EXACT_PROBES)]++;
+        if (probes > maxProbes[op.ordinal()]) {
+            maxProbes[op.ordinal()] = probes;
+        }
+    }
+
+    /**
+     * Counts one rehash of the table.
+     *
+     * @param grew true if the table got longer, false if it was rehashed at
+     * the same length to drop removed entries
+     * @param nanos time the rehash took
+     */
+    void recordRehash(boolean grew, long nanos) {
+        if (grew) {
+            resizes++;
+        } else {
+            compactions++;
+        }
+        rehashNanos += nanos;
+    }
+
+    /**
+     * Counts one switch to randomized hashing, which rehashes the table at
+     * the same length under new hashes.
+     *
+     * @param nanos time the re-key and its rehash took
+     */
+    void recordRekey(long nanos) {
+        rekeys++;
+        rehashNanos += nanos;
+    }
+
+    /**
+     * @param tableLength
+     *            length of the map's table
+     * @param size
+     *            number of live entries in the table
+     * @param removed
+     *            number of slots holding removed entries
+     * @return a copy of the counters together with the table state
+     */
+    Snapshot snapshot(int tableLength, int size, int removed) {
+        return new Snapshot(this, tableLength, size, removed);
+    }
+
+    /**
+     * An unchanging copy of a map's metrics at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[][] histograms;
+        private final long[] maxProbes;
+        private final long resizes;
+        private final long compactions;
+        private final long rekeys;
+        private final long rehashNanos;
+        private final int tableLength;
+        private final int liveSlots;
+        private final int removedSlots;
+
+        /**
+         * @param metrics
+         *            counters to copy
+         * @param tableLength
+         *            length of the map's table
+         * @param liveSlots
+         *            number of slots holding live entries
+         * @param removedSlots
+         *            number of slots holding removed entries
+         */
+        private Snapshot(HashMapMetrics metrics, int tableLength,
+                int liveSlots, int removedSlots) {
+            histograms = new long[metrics.histograms.length][];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = metrics.histograms[i].clone();
+            }
+            maxProbes = metrics.maxProbes.clone();
+            resizes = metrics.resizes;
+            compactions = metrics.compactions;
+            rekeys = metrics.rekeys;
+            rehashNanos = metrics.rehashNanos;
+            this.tableLength = tableLength;
+            this.liveSlots = liveSlots;
+            this.removedSlots = removedSlots;
+        }
+
+        /**
+         * Returns the probe length histogram of an operation. Element i
+         * counts the operations that looked at i slots, except the last
+         * element, which counts those that looked at
+         * {@link HashMapMetrics#MAX_EXACT_PROBES} or more.
+         *
+         * @param op kind of operation
+         * @return a copy of the histogram
+         */
+        public long[] probeHistogram(Operation op) {
+            return histograms[op.ordinal()].clone();
+        }
+
+        /**
+         * @param op kind of operation
+         * @return number of operations of that kind recorded
+         */
+        public long count(Operation op) {
+            long count = 0;
+            for (long bucket : histograms[op.ordinal()]) {
+                count += bucket;
+            }
+            return count;
+        }
+
+        /**
+         * @param op kind of operation
+         * @return mean probe length of the operation, counting the last
+         * bucket as {@link HashMapMetrics#MAX_EXACT_PROBES}, 0 if none were
+         * recorded
+         */
+        public double meanProbes(Operation op) {
+            long[] histogram = histograms[op.ordinal()];
+            long count = 0;
+            long total = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                count += histogram[i];
+                total += histogram[i] * i;
+            }
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * @param op kind of operation
+         * @return longest probe length recorded for the operation
+         */
+        public long maxProbes(Operation op) {
+            return maxProbes[op.ordinal()];
+        }
+
+        /**
+         * @return number of times the table grew
+         */
+        public long resizeCount() {
+            return resizes;
+        }
+
+        /**
+         * @return number of times the table was rehashed at the same length
+         * to drop removed entries
+         */
+        public long compactionCount() {
+            return compactions;
+        }
+
+        /**
+         * @return number of times the map switched to randomized hashing
+         */
+        public long rekeyCount() {
+            return rekeys;
+        }
+
+        /**
+         * @return total nanoseconds spent in resizes, compactions and
+         * re-keys
+         */
+        public long rehashNanos() {
+            return rehashNanos;
+        }
+
+        /**
+         * @return length of the table
+         */
+        public int tableLength() {
+            return tableLength;
+        }
+
+        /**
+         * @return number of slots holding live entries
+         */
+        public int liveSlots() {
+            return liveSlots;
+        }
+
+        /**
+         * @return number of slots holding removed entries
+         */
+        public int removedSlots() {
+            return removedSlots;
+        }
+
+        /**
+         * @return number of slots that have never held an entry since the
+         * last rehash
+         */
+        public int emptySlots() {
+            return tableLength - liveSlots - removedSlots;
+        }
+
+        /**
+         * @return live entries divided by the table length
+         */
+        public double loadFactor() {
+            return (double) liveSlots / tableLength;
+        }
+
+        /**
+         * Flattens the snapshot into named values for exporting, with names
+         * like {@code get.probes.mean} and {@code slots.removed}. The probe
+         * histograms are keyed {@code get.probes.3} and so on, with the last
+         * bucket keyed {@code get.probes.32+}.
+         *
+         * @return map of metric name to value, in a fixed order
+         */
+        public Map<String, Number> toMap() {
+            Map<String, Number> values = new LinkedHashMap<String, Number>();
+            for (Operation op : Operation.values()) {
+                String name = op.name().toLowerCase();
+                long[] histogram = histograms[op.ordinal()];
+                values.put(name + ".count", count(op));
+                values.put(name + ".probes.mean", meanProbes(op));
+                values.put(name + ".probes.max", maxProbes(op));
+                for (int i = 1; i < MAX_EXACT_PROBES; i++) {
+                    values.put(name + ".probes." + i, histogram[i]);
+                }
+                values.put(name + ".probes." + MAX_EXACT_PROBES + "+",
+                        histogram[MAX_EXACT_PROBES]);
+            }
+            values.put("resize.count", resizes);
+            values.put("compaction.count", compactions);
+            values.put("rekey.count", rekeys);
+            values.put("rehash.nanos", rehashNanos);
+            values.put("slots.total", tableLength);
+            values.put("slots.live", liveSlots);
+            values.put("slots.removed", removedSlots);
+            values.put("slots.empty", emptySlots());
+            values.put("load.factor", loadFactor());
+            return values;
+        }
+
+        @Override
+        public String toString() {
+            return "HashMapMetrics" + toMap();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a HashMap to a compact binary snapshot and reads it back. Keys and
+ * values are turned into bytes by Serializers, and the records are streamed
+ * through an NIO channel in large chunks.
+ *
+ * A snapshot is a header followed by one record per entry:
+ * <pre>
+ * header: magic, version, table length, size, flags
+ * record: slot, hash, key length, key bytes, value length, value bytes
+ * </pre>
+ * with the lengths written as varints, 7 bits per byte with the high bit set
+ * on every byte but the last, flags as one byte and every other number as a
+ * 4 byte big endian int.
+ * The records are the live slots of the table in slot order. When the table
+ * held no removed entries and hashing was not randomized, the reader
+ * rebuilds a table of the same length and puts each entry back in its old
+ * slot without probing, as long as its key still hashes the same.
+ *
+ * @version 1.0
+ */
+public final class HashMapSnapshot {
+    public static final int MAGIC = 0x484d5331;
+    public static final int VERSION = 1;
+
+    // flag set when records can go straight back into their slots
+    private static final byte EXACT_LAYOUT = 1;
+    private static final int HEADER_BYTES = 17;
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private HashMapSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the map to a file, replacing anything already
+     * there.
+     *
+     * @param map map to write
+     * @param file file to write to
+     * @param keys turns keys into bytes
+     * @param values turns values into bytes
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @throws IllegalArgumentException if any argument is null
+     * @throws IOException if the file cannot be written
+     */
+    public static <K, V> void write(HashMap<K, V> map, Path file,
+            Serializer<? super K> keys, Serializer<? super V> values)
+        throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        try (FileChannel out = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(map, out, keys, values);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the map to a channel. The channel is not closed.
+     * The map must not change while it is being written.
+     * Should be O(n)
+     *
+     * @param map map to write
+     * @param out channel to write to
+     * @param keys turns keys into bytes
+     * @param values turns values into bytes
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @throws IllegalArgumentException if any argument is null
+     * @throws IOException if the channel cannot be written
+     */
+    public static <K, V> void write(HashMap<K, V> map,
+            WritableByteChannel out, Serializer<? super K> keys,
+            Serializer<? super V> values) throws IOException {
+        if (map == null || out == null || keys == null || values == null) {
+            throw new IllegalArgumentException(
+                    "Map, channel and serializers cannot be null");
+        }
+        MapEntry<K, V>[] table = map.toArray();
+        boolean exact = !map.isHashingRandomized();
+        for (int i = 0; i < table.length && exact; i++) {
+            exact = table[i] == null || !table[i].isRemoved();
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(table.length);
+        buffer.putInt(map.size());
+        buffer.put(exact ? EXACT_LAYOUT : 0);
+        for (int i = 0; i < table.length; i++) {
+            MapEntry<K, V> entry = table[i];
+            if (entry == null || entry.isRemoved()) {
+                continue;
+            }
+            int keyBytes = keys.sizeOf(entry.getKey());
+            int valueBytes = values.sizeOf(entry.getValue());
+            int recordBytes = 8 + 2 * MAX_VARINT_BYTES + keyBytes
+                    + valueBytes;
+            if (buffer.remaining() < recordBytes) {
+                drain(buffer, out);
+                if (buffer.capacity() < recordBytes) {
+                    buffer = ByteBuffer.allocate(recordBytes);
+                }
+            }
+            buffer.putInt(i);
+            buffer.putInt(entry.getHash());
+            putVarInt(buffer, keyBytes);
+            keys.write(entry.getKey(), buffer);
+            putVarInt(buffer, valueBytes);
+            values.write(entry.getValue(), buffer);
+        }
+        drain(buffer, out);
+    }
+
+    /**
+     * Reads a map back from a snapshot file.
+     *
+     * @param file file to read from
+     * @param keys turns bytes back into keys
+     * @param values turns bytes back into values
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @throws IllegalArgumentException if any argument is null
+     * @throws IOException if the file cannot be read or is not a snapshot
+     * @return the restored map
+     */
+    public static <K, V> HashMap<K, V> read(Path file, Serializer<K> keys,
+            Serializer<V> values) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        try (FileChannel in = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            return read(in, keys, values);
+        }
+    }
+
+    /**
+     * Reads a map back from a snapshot on a channel. The channel is not
+     * closed.
+     * Should be O(n)
+     *
+     * @param in channel to read from
+     * @param keys turns bytes back into keys
+     * @param values turns bytes back into values
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @throws IllegalArgumentException if any argument is null
+     * @throws IOException if the channel cannot be read or does not hold a
+     * snapshot
+     * @return the restored map
+     */
+    public static <K, V> HashMap<K, V> read(ReadableByteChannel in,
+            Serializer<K> keys, Serializer<V> values) throws IOException {
+        if (in == null || keys == null || values == null) {
+            throw new IllegalArgumentException(
+                    "Channel and serializers cannot be null");
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        buffer.flip();
+        fill(buffer, in, HEADER_BYTES);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a HashMap snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int tableLength = buffer.getInt();
+        int size = buffer.getInt();
+        boolean exact = buffer.get() == EXACT_LAYOUT;
+        if (tableLength < 0 || size < 0 || size > tableLength) {
+            throw new IOException("Corrupt snapshot header");
+        }
+        HashMap<K, V> map = new HashMap<K, V>();
+        map.startRestore(tableLength);
+        List<MapEntry<K, V>> misplaced = new ArrayList<MapEntry<K, V>>();
+        for (int i = 0; i < size; i++) {
+            fill(buffer, in, 8);
+            int slot = buffer.getInt();
+            int hash = buffer.getInt();
+            K key = readObject(getVarInt(buffer, in), keys, buffer, in);
+            V value = readObject(getVarInt(buffer, in), values, buffer, in);
+            if (!exact) {
+                map.add(key, value);
+            } else if (!map.restoreAt(slot, key, value, hash)) {
+                misplaced.add(new MapEntry<K, V>(key, value));
+            }
+        }
+        map.finishRestore(misplaced.isEmpty());
+        for (MapEntry<K, V> entry : misplaced) {
+            map.add(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    /**
+     * @param length
+     *            number of bytes the object takes
+     * @param serializer
+     *            turns the bytes into the object
+     * @param buffer
+     *            buffer holding the bytes read so far
+     * @param in
+     *            channel to read more bytes from
+     * @param <T>
+     *            type of the object
+     * @throws IOException if the channel cannot be read or ends early
+     * @return the object
+     */
+    private static <T> T readObject(int length, Serializer<T> serializer,
+            ByteBuffer buffer, ReadableByteChannel in) throws IOException {
+        if (length < 0) {
+            throw new IOException("Corrupt snapshot record");
+        }
+        if (length > buffer.capacity()) {
+            // too big for the chunk buffer, read this one object on its own
+            ByteBuffer big = ByteBuffer.allocate(length);
+            big.put(buffer);
+            while (big.hasRemaining()) {
+                if (in.read(big) < 0) {
+                    throw new IOException("Snapshot is truncated");
+                }
+            }
+            big.flip();
+            return serializer.read(big);
+        }
+        fill(buffer, in, length);
+        int limit = buffer.limit();
+        int end = buffer.position() + length;
+        buffer.limit(end);
+        T data = serializer.read(buffer);
+        buffer.limit(limit);
+        buffer.position(end);
+        return data;
+    }
+
+    /**
+     * @param buffer
+     *            buffer in write mode
+     * @param value
+     *            non negative int to write in 1 to 5 bytes
+     */
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * @param buffer
+     *            buffer in read mode
+     * @param in
+     *            channel to read more bytes from
+     * @throws IOException if the channel cannot be read, ends early or the
+     * varint is too long
+     * @return the int read
+     */
+    private static int getVarInt(ByteBuffer buffer, ReadableByteChannel in)
+        throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_BYTES; shift += 7) {
+            fill(buffer, in, 1);
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt snapshot record");
+    }
+
+    /**
+     * Makes sure the buffer has at least the given number of unread bytes,
+     * reading more from the channel if not.
+     *
+     * @param buffer
+     *            buffer in read mode
+     * @param in
+     *            channel to read from
+     * @param needed
+     *            number of bytes needed, at most the buffer's capacity
+     * @throws IOException if the channel cannot be read or ends early
+     */
+    private static void fill(ByteBuffer buffer, ReadableByteChannel in,
+            int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (in.read(buffer) < 0) {
+                throw new IOException("Snapshot is truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * writes out everything in the buffer and clears it
+     *
+     * @param buffer
+     *            buffer in write mode
+     * @param out
+     *            channel to write to
+     * @throws IOException if the channel cannot be written
+     */
+    private static void drain(ByteBuffer buffer, WritableByteChannel out)
+        throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,347 @@
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A hash map that spreads the cost of regrowing over many operations. When
+ * the table needs to grow, a table of 2n + 1 slots is allocated next to the
+ * old one, and every add, remove and get then moves a few slots of the old
+ * table into the new one. Lookups check the new table first and fall back
+ * to the old one until it has been emptied, so no single operation pays for
+ * copying the whole map.
+ *
+ * Each add moves at least {@link #MIGRATION_STEP} slots, and more if that
+ * is what it takes to empty the old table before the new one fills to the
+ * load factor, so a resize never has to wait for the previous one.
+ *
+ * @version 1.0
+ */
+public class IncrementalHashMap<K, V> implements HashMapInterface<K, V> {
+    public static final int MIGRATION_STEP = 8;
+
+    private MapEntry<K, V>[] table;
+    // table being drained during a resize, null otherwise
+    private MapEntry<K, V>[] old;
+    // next slot of old to move
+    private int migrated;
+    private int size;
+    // left in old slots that have been moved so their probe chains stay intact
+    private final MapEntry<K, V> moved;
+
+    /**
+     * Create a hash map with no entries.
+     */
+    public IncrementalHashMap() {
+        moved = new MapEntry<K, V>(null, null);
+        moved.setRemoved(true);
+        clear();
+    }
+
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        migrateForAdd();
+        if (size + 1 > (int) (table.length * MAX_LOAD_FACTOR)) {
+            assert old == null : "previous resize is still in progress";
+            startResize();
+            migrateForAdd();
+        }
+        V inBucket = null;
+        if (old != null) {
+            int index = indexOf(old, key);
+            if (index != -1) {
+                inBucket = old[index].getValue();
+                old[index].setRemoved(true);
+                size--;
+            }
+        }
+        int index = slotFor(table, key);
+        while (index == -1) {
+            rebuild();
+            index = slotFor(table, key);
+        }
+        if (table[index] != null && !table[index].isRemoved()) {
+            inBucket = table[index].getValue();
+            table[index].setValue(value);
+        } else {
+            table[index] = new MapEntry<K, V>(key, value);
+            size++;
+        }
+        return inBucket;
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        migrate(MIGRATION_STEP);
+        MapEntry<K, V> entry = find(key);
+        if (entry == null) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        entry.setRemoved(true);
+        size--;
+        return entry.getValue();
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        migrate(MIGRATION_STEP);
+        MapEntry<K, V> entry = find(key);
+        if (entry == null) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return entry.getValue();
+    }
+
+    @Override
+    public boolean contains(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        return find(key) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        table = new MapEntry[STARTING_SIZE];
+        old = null;
+        migrated = 0;
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * While a resize is in progress some entries are still in the old
+     * table, which is not included here.
+     *
+     * @return the current backing array, including empty spaces
+     */
+    @Override
+    public MapEntry<K, V>[] toArray() {
+        return table;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        HashSet<K> keys = new HashSet<K>();
+        addKeys(table, keys);
+        if (old != null) {
+            addKeys(old, keys);
+        }
+        return keys;
+    }
+
+    @Override
+    public List<V> values() {
+        LinkedList<V> vals = new LinkedList<V>();
+        addValues(table, vals);
+        if (old != null) {
+            addValues(old, vals);
+        }
+        return vals;
+    }
+
+    /**
+     * @param tab
+     *            table to read
+     * @param keys
+     *            set to add the live keys of tab to
+     */
+    private void addKeys(MapEntry<K, V>[] tab, Set<K> keys) {
+        for (int i = 0; i < tab.length; i++) {
+            if (tab[i] != null && !tab[i].isRemoved()) {
+                keys.add(tab[i].getKey());
+            }
+        }
+    }
+
+    /**
+     * @param tab
+     *            table to read
+     * @param vals
+     *            list to add the live values of tab to
+     */
+    private void addValues(MapEntry<K, V>[] tab, List<V> vals) {
+        for (int i = 0; i < tab.length; i++) {
+            if (tab[i] != null && !tab[i].isRemoved()) {
+                vals.add(tab[i].getValue());
+            }
+        }
+    }
+
+    /**
+     * @param key
+     *            key to look for
+     * @return the live entry for key in either table, null if there is none
+     */
+    private MapEntry<K, V> find(K key) {
+        int index = indexOf(table, key);
+        if (index != -1) {
+            return table[index];
+        }
+        if (old != null) {
+            index = indexOf(old, key);
+            if (index != -1) {
+                return old[index];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * starts moving entries into a table of 2n + 1 slots
+     */
+    @SuppressWarnings("unchecked")
+    private void startResize() {
+        old = table;
+        migrated = 0;
+        table = new MapEntry[old.length * 2 + 1];
+    }
+
+    /**
+     * moves enough slots of the old table that the rest can be spread over
+     * the adds left before the current table reaches the load factor
+     */
+    private void migrateForAdd() {
+        if (old == null) {
+            return;
+        }
+        int addsLeft = Math.max(1,
+                (int) (table.length * MAX_LOAD_FACTOR) - size);
+        int slotsLeft = old.length - migrated;
+        migrate(Math.max(MIGRATION_STEP,
+                (slotsLeft + addsLeft - 1) / addsLeft));
+    }
+
+    /**
+     * moves entries from the old table into the current one
+     *
+     * @param slots
+     *            most slots of the old table to move
+     */
+    private void migrate(int slots) {
+        for (int i = 0; i < slots && old != null; i++) {
+            MapEntry<K, V> entry = old[migrated];
+            if (entry != null && !entry.isRemoved()) {
+                int index = slotFor(table, entry.getKey());
+                if (index == -1) {
+                    rebuild();
+                    return;
+                }
+                table[index] = entry;
+                old[migrated] = moved;
+            }
+            migrated++;
+            if (migrated == old.length) {
+                old = null;
+            }
+        }
+    }
+
+    /**
+     * copies every live entry of both tables into a new table in one go.
+     * Only used when quadratic probing cannot find a free slot.
+     */
+    @SuppressWarnings("unchecked")
+    private void rebuild() {
+        MapEntry<K, V>[] current = table;
+        MapEntry<K, V>[] draining = old;
+        int length = current.length;
+        boolean placed = false;
+        while (!placed) {
+            length = length * 2 + 1;
+            table = new MapEntry[length];
+            placed = copyLive(current) && (draining == null
+                    || copyLive(draining));
+        }
+        old = null;
+        migrated = 0;
+    }
+
+    /**
+     * @param from
+     *            table to copy the live entries of into table
+     * @return false if some entry could not be placed
+     */
+    private boolean copyLive(MapEntry<K, V>[] from) {
+        for (int i = 0; i < from.length; i++) {
+            if (from[i] != null && !from[i].isRemoved()) {
+                int index = slotFor(table, from[i].getKey());
+                if (index == -1) {
+                    return false;
+                }
+                table[index] = from[i];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * finds the live entry holding key
+     *
+     * @param tab
+     *            table to search
+     * @param key
+     *            key to look for
+     * @return index of the key, -1 if it is not in tab
+     */
+    private int indexOf(MapEntry<K, V>[] tab, K key) {
+        int ogIndex = (key.hashCode() & 0x7fffffff) % tab.length;
+        int index = ogIndex;
+        for (int quadratic = 1; quadratic <= tab.length; quadratic++) {
+            if (tab[index] == null) {
+                return -1;
+            } else if (!tab[index].isRemoved()
+                    && tab[index].getKey().equals(key)) {
+                return index;
+            }
+            index = (int) ((ogIndex + (long) quadratic * quadratic)
+                    % tab.length);
+        }
+        return -1;
+    }
+
+    /**
+     * finds where key belongs: the slot of its live entry if it has one,
+     * otherwise the first removed or empty slot on its probe sequence
+     *
+     * @param tab
+     *            table to search
+     * @param key
+     *            key to place
+     * @return the slot for key, -1 if the probe sequence has no room
+     */
+    private int slotFor(MapEntry<K, V>[] tab, K key) {
+        int ogIndex = (key.hashCode() & 0x7fffffff) % tab.length;
+        int index = ogIndex;
+        int firstRemoved = -1;
+        for (int quadratic = 1; quadratic <= tab.length; quadratic++) {
+            if (tab[index] == null) {
+                return firstRemoved == -1 ? index : firstRemoved;
+            } else if (tab[index].isRemoved()) {
+                if (firstRemoved == -1) {
+                    firstRemoved = index;
+                }
+            } else if (tab[index].getKey().equals(key)) {
+                return index;
+            }
+            index = (int) ((ogIndex + (long) quadratic * quadratic)
+                    % tab.length);
+        }
+        return firstRemoved;
+    }
+}
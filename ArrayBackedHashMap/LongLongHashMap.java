@@ -0,0 +1,292 @@
+import java.util.NoSuchElementException;
+
+/**
+ * A hash map from primitive longs to primitive longs. Keys and values are
+ * stored in flat arrays next to a state array, so no object is allocated per
+ * entry and nothing is boxed. Follows the same contract as
+ * {@link HashMapInterface}.
+ *
+ * @version 1.0
+ */
+public class LongLongHashMap {
+    public static final double MAX_REMOVED_RATIO = 0.25;
+
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte REMOVED = 2;
+
+    private long[] keys;
+    private long[] values;
+    private byte[] states;
+    private int size;
+    // slots holding REMOVED, rehashed away past MAX_REMOVED_RATIO
+    private int removedCount;
+    private final long noEntryValue;
+
+    /**
+     * Create a map with no entries that reports 0 for missing keys.
+     */
+    public LongLongHashMap() {
+        this(0L);
+    }
+
+    /**
+     * Create a map with no entries.
+     *
+     * @param noEntryValue value returned by add when the key was not already
+     *            in the map
+     */
+    public LongLongHashMap(long noEntryValue) {
+        this.noEntryValue = noEntryValue;
+        keys = new long[HashMapInterface.STARTING_SIZE];
+        values = new long[HashMapInterface.STARTING_SIZE];
+        states = new byte[HashMapInterface.STARTING_SIZE];
+        size = 0;
+        removedCount = 0;
+    }
+
+    /**
+     * Adds the given key-value pair to the map, replacing the value if the
+     * key is already in the map.
+     *
+     * @param key key to add into the map
+     * @param value value to add into the map
+     * @return the no entry value if the key was not already in the map. If it
+     * was in the map, return the old value associated with it.
+     */
+    public long add(long key, long value) {
+        if (size + 1
+                > (int) (keys.length * HashMapInterface.MAX_LOAD_FACTOR)) {
+            regrow();
+        }
+        int ogIndex = hash(key);
+        int index = ogIndex;
+        int firstRemoved = -1;
+        for (int quadratic = 1; quadratic <= keys.length; quadratic++) {
+            if (states[index] == EMPTY) {
+                if (firstRemoved == -1) {
+                    firstRemoved = index;
+                }
+                break;
+            } else if (states[index] == FULL) {
+                if (keys[index] == key) {
+                    long old = values[index];
+                    values[index] = value;
+                    return old;
+                }
+            } else if (firstRemoved == -1) {
+                firstRemoved = index;
+            }
+            index = probe(ogIndex, quadratic);
+        }
+        // after a certain amount of time, it is not efficient to
+        // continue looking for spots
+        if (firstRemoved == -1) {
+            regrow();
+            return add(key, value);
+        }
+        if (states[firstRemoved] == REMOVED) {
+            removedCount--;
+        }
+        keys[firstRemoved] = key;
+        values[firstRemoved] = value;
+        states[firstRemoved] = FULL;
+        size++;
+        return noEntryValue;
+    }
+
+    /**
+     * Removes the value associated with the key from the map.
+     *
+     * @param key the key to remove
+     * @throws java.util.NoSuchElementException if the key does not exist
+     * @return the value previously associated with the key
+     */
+    public long remove(long key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        long old = values[index];
+        states[index] = REMOVED;
+        size--;
+        removedCount++;
+        compactIfNeeded();
+        return old;
+    }
+
+    /**
+     * Gets the value associated with the given key.
+     *
+     * @param key the key to search for
+     * @throws java.util.NoSuchElementException if the key is not in the map
+     * @return the value associated with the given key
+     */
+    public long get(long key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return values[index];
+    }
+
+    /**
+     * Returns whether or not the key is in the map.
+     *
+     * @param key the key to search for
+     * @return whether or not the key is in the map
+     */
+    public boolean contains(long key) {
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * Clears the table and resets it to the default size.
+     */
+    public void clear() {
+        keys = new long[HashMapInterface.STARTING_SIZE];
+        values = new long[HashMapInterface.STARTING_SIZE];
+        states = new byte[HashMapInterface.STARTING_SIZE];
+        size = 0;
+        removedCount = 0;
+    }
+
+    /**
+     * Returns the number of elements in the map.
+     *
+     * @return number of elements in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the value add returns when a key was not already in the map.
+     *
+     * @return the no entry value
+     */
+    public long getNoEntryValue() {
+        return noEntryValue;
+    }
+
+    /**
+     * Returns the keys contained in this map.
+     * Should be O(n)
+     *
+     * @return array of keys in this map
+     */
+    public long[] keys() {
+        long[] out = new long[size];
+        int j = 0;
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] == FULL) {
+                out[j++] = keys[i];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the values contained in this map, in the same order as
+     * {@link #keys()}.
+     * Should be O(n)
+     *
+     * @return array of values in this map
+     */
+    public long[] values() {
+        long[] out = new long[size];
+        int j = 0;
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] == FULL) {
+                out[j++] = values[i];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * finds the slot holding key
+     *
+     * @param key
+     *            key to look for
+     * @return index of the key, -1 if it is not in the map
+     */
+    private int indexOf(long key) {
+        int ogIndex = hash(key);
+        int index = ogIndex;
+        for (int quadratic = 1; quadratic <= keys.length; quadratic++) {
+            if (states[index] == EMPTY) {
+                return -1;
+            } else if (states[index] == FULL && keys[index] == key) {
+                return index;
+            }
+            index = probe(ogIndex, quadratic);
+        }
+        return -1;
+    }
+
+    /**
+     * hashes a key the same way {@code Long.hashCode} does
+     *
+     * @param key
+     *            key to hash
+     * @return original index of the key
+     */
+    private int hash(long key) {
+        int h = (int) (key ^ (key >>> 32));
+        return (h & 0x7fffffff) % keys.length;
+    }
+
+    /**
+     * finds the next slot on the quadratic probe sequence
+     *
+     * @param ogIndex
+     *            original hash index
+     * @param quadratic
+     *            current quadratic that is being added
+     * @return the index of the next slot on the probe sequence
+     */
+    private int probe(int ogIndex, int quadratic) {
+        return (int) ((ogIndex + (long) quadratic * quadratic) % keys.length);
+    }
+
+    /**
+     * regrows table to 2n +1 size
+     */
+    private void regrow() {
+        rehash(keys.length * 2 + 1);
+    }
+
+    /**
+     * Rehashes in place once more than MAX_REMOVED_RATIO of the slots hold
+     * removed markers, so misses do not have to probe past them.
+     */
+    private void compactIfNeeded() {
+        if (removedCount > (int) (keys.length * MAX_REMOVED_RATIO)) {
+            rehash(keys.length);
+        }
+    }
+
+    /**
+     * moves every entry into new arrays of the given length, dropping the
+     * removed markers
+     *
+     * @param length
+     *            length of the new arrays
+     */
+    private void rehash(int length) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        byte[] oldStates = states;
+        keys = new long[length];
+        values = new long[length];
+        states = new byte[length];
+        size = 0;
+        removedCount = 0;
+        for (int i = 0; i < oldStates.length; i++) {
+            if (oldStates[i] == FULL) {
+                add(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ public class MapEntry<K, V> {
     private boolean removed;
     private K key;
     private V value;
+    private int hash;
 
     /**
      * Create a MapEntry object with the given key and value.
@@ -14,8 +15,20 @@ public class MapEntry<K, V> {
      * @param v value for this entry
      */
     public MapEntry(K k, V v) {
+        this(k, v, k == null ? 0 : k.hashCode());
+    }
+
+    /**
+     * Create a MapEntry object with the given key, value and the already
+     * computed hash code of the key.
+     * @param k key for this entry
+     * @param v value for this entry
+     * @param h {@code k.hashCode()}
+     */
+    public MapEntry(K k, V v, int h) {
         key = k;
         value = v;
+        hash = h;
     }
 
     /**
@@ -52,6 +65,27 @@ public class MapEntry<K, V> {
      */
     public void setKey(K key) {
         this.key = key;
+        hash = key == null ? 0 : key.hashCode();
+    }
+
+    /**
+     * Gets the hash code of the key, computed when the key was set. A map
+     * that hashes keys its own way may have replaced it with that hash.
+     *
+     * @return hash code of the key in this entry
+     */
+    public int getHash() {
+        return hash;
+    }
+
+    /**
+     * Replaces the stored hash of the key, for a map that hashes keys its
+     * own way.
+     *
+     * @param hash hash of the key in this entry
+     */
+    void setHash(int hash) {
+        this.hash = hash;
     }
 
     /**
@@ -0,0 +1,717 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A hash map that lives in a memory-mapped file. The file holds a header,
+ * an open-addressing index of fixed size slots and the serialized records,
+ * and the map works on the mapping directly, so opening an existing file
+ * only has to check its header. Nothing is deserialized until it is read.
+ *
+ * The header carries a checksum and a clean flag. The flag is cleared before
+ * the first change after the file is opened or flushed, and set again by
+ * {@link #flush()} and {@link #close()}. Opening a file whose header does
+ * not check out, or that was not flushed after its last change, fails with
+ * an IOException instead of reading a half written table.
+ *
+ * Regrowing writes a new, larger file next to the old one and moves it into
+ * place, so a crash during a regrow leaves the old file intact. A single
+ * mapping is limited to 2GB, and so is the file.
+ *
+ * Keys are hashed and compared by their serialized bytes, never by their
+ * own hashCode and equals, since a hashCode need not be the same in the
+ * next JVM. The hash stored in each slot is {@link Serializers#hash} of
+ * those bytes, so the layout of a file depends on that function and on
+ * the key serializer; a file must be reopened with the same serializer.
+ *
+ * @version 1.0
+ */
+public class MappedHashMap<K, V> implements HashMapInterface<K, V>,
+        Closeable {
+
+    /**
+     * When changes are forced out to the file.
+     */
+    public static enum FlushPolicy {
+        /**
+         * Only on {@link MappedHashMap#flush()} and
+         * {@link MappedHashMap#close()}.
+         */
+        MANUAL,
+        /**
+         * After every add and remove.
+         */
+        EVERY_WRITE
+    }
+
+    private static final long MAGIC = 0x4D41505045444853L;
+    // 2: slot hashes come from the serialized key bytes
+    private static final int VERSION = 2;
+    private static final int STARTING_CAPACITY = 16;
+    private static final int INITIAL_DATA_BYTES = 4096;
+
+    // header layout
+    private static final int MAGIC_AT = 0;
+    private static final int VERSION_AT = 8;
+    private static final int CAPACITY_AT = 12;
+    private static final int SIZE_AT = 16;
+    private static final int REMOVED_AT = 20;
+    private static final int DATA_END_AT = 24;
+    private static final int GARBAGE_AT = 32;
+    private static final int CLEAN_AT = 40;
+    private static final int CHECKSUM_AT = 48;
+    private static final int HEADER_BYTES = 64;
+
+    // long record address, then int hash
+    private static final int SLOT_BYTES = 12;
+    private static final long EMPTY = 0;
+    private static final long REMOVED = -1;
+    // int key length, then int value length
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final Path file;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final FlushPolicy policy;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+    private int removedCount;
+    private long dataEnd;
+    private long garbageBytes;
+    private boolean dirty;
+    // index bytes changed since the last flush, none when from >= to
+    private int changedFrom;
+    private int changedTo;
+    // end of the data region at the last flush, records past it are new
+    private long flushedEnd;
+    // serialized form of the key being looked up
+    private ByteBuffer scratch;
+
+    /**
+     * Opens the map stored in file, creating an empty one if the file does
+     * not exist or is empty.
+     *
+     * @param file file holding the map
+     * @param keySerializer serializer for the keys, the same one the file was
+     *            written with
+     * @param valueSerializer serializer for the values, the same one the file
+     *            was written with
+     * @param policy when to force changes out to the file
+     * @throws IllegalArgumentException if any argument is null
+     * @throws IOException if the file cannot be opened, or it does not hold
+     *            a cleanly closed map
+     */
+    public MappedHashMap(Path file, Serializer<K> keySerializer,
+            Serializer<V> valueSerializer, FlushPolicy policy)
+        throws IOException {
+        if (file == null || keySerializer == null || valueSerializer == null
+                || policy == null) {
+            throw new IllegalArgumentException("Arguments cannot be null");
+        }
+        this.file = file;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.policy = policy;
+        scratch = ByteBuffer.allocate(64);
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            writeEmpty(file, STARTING_CAPACITY);
+        }
+        open();
+    }
+
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        ensureOpen();
+        if (size + removedCount + 1 > (int) (capacity * MAX_LOAD_FACTOR)) {
+            regrow(size + 1 > (int) (capacity * MAX_LOAD_FACTOR / 2)
+                    ? capacity * 2 : capacity);
+        }
+        markDirty();
+        int keyLength = serializeKey(key);
+        int hash = Serializers.hash(scratch, keyLength);
+        int valueLength = valueSerializer.sizeOf(value);
+        ensureDataRoom(RECORD_HEADER_BYTES + keyLength + valueLength);
+        int slot = find(hash, keyLength);
+        V old = null;
+        if (slot >= 0) {
+            long address = buffer.getLong(slotAt(slot));
+            old = readValue(address);
+            garbageBytes += recordLength(address);
+        } else {
+            slot = -slot - 1;
+            if (buffer.getLong(slotAt(slot)) == REMOVED) {
+                removedCount--;
+            }
+            size++;
+        }
+        long address = dataEnd;
+        int at = (int) address;
+        buffer.putInt(at, keyLength);
+        buffer.putInt(at + 4, valueLength);
+        scratch.limit(keyLength).position(0);
+        buffer.position(at + RECORD_HEADER_BYTES);
+        buffer.put(scratch);
+        valueSerializer.write(value, buffer);
+        buffer.clear();
+        dataEnd += RECORD_HEADER_BYTES + keyLength + valueLength;
+        buffer.putLong(slotAt(slot), address);
+        buffer.putInt(slotAt(slot) + 8, hash);
+        slotChanged(slot);
+        afterWrite();
+        return old;
+    }
+
+    @Override
+    public V remove(K key) {
+        int slot = lookup(key);
+        if (slot < 0) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        markDirty();
+        long address = buffer.getLong(slotAt(slot));
+        V old = readValue(address);
+        garbageBytes += recordLength(address);
+        buffer.putLong(slotAt(slot), REMOVED);
+        slotChanged(slot);
+        removedCount++;
+        size--;
+        afterWrite();
+        return old;
+    }
+
+    @Override
+    public V get(K key) {
+        int slot = lookup(key);
+        if (slot < 0) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return readValue(buffer.getLong(slotAt(slot)));
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return lookup(key) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        ensureOpen();
+        try {
+            channel.close();
+            buffer = null;
+            writeEmpty(file, STARTING_CAPACITY);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forces every change out to the file, then writes the header, marks the
+     * file clean and forces the header. The data goes first so a clean
+     * header never reaches the disk ahead of the slots and records it
+     * describes. Only the slots and records changed since the last flush are
+     * forced.
+     */
+    public void flush() {
+        ensureOpen();
+        if (changedFrom < changedTo) {
+            buffer.force(changedFrom, changedTo - changedFrom);
+        }
+        if (flushedEnd < dataEnd) {
+            buffer.force((int) flushedEnd, (int) (dataEnd - flushedEnd));
+        }
+        writeHeader(buffer, capacity, size, removedCount, dataEnd,
+                garbageBytes);
+        buffer.force(0, HEADER_BYTES);
+        resetChanges();
+        dirty = false;
+    }
+
+    /**
+     * Flushes the map and closes the file. The map cannot be used
+     * afterwards.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        flush();
+        channel.close();
+        channel = null;
+        buffer = null;
+    }
+
+    /**
+     * Deserializes every slot into a new array. This is a copy, not a
+     * backing array.
+     *
+     * @return the table as entries, including empty spaces
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public MapEntry<K, V>[] toArray() {
+        ensureOpen();
+        MapEntry<K, V>[] table = new MapEntry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            long address = buffer.getLong(slotAt(i));
+            if (address > 0) {
+                table[i] = new MapEntry<K, V>(readKey(address),
+                        readValue(address));
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        ensureOpen();
+        HashSet<K> keys = new HashSet<K>();
+        for (int i = 0; i < capacity; i++) {
+            long address = buffer.getLong(slotAt(i));
+            if (address > 0) {
+                keys.add(readKey(address));
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public List<V> values() {
+        ensureOpen();
+        LinkedList<V> vals = new LinkedList<V>();
+        for (int i = 0; i < capacity; i++) {
+            long address = buffer.getLong(slotAt(i));
+            if (address > 0) {
+                vals.add(readValue(address));
+            }
+        }
+        return vals;
+    }
+
+    /**
+     * maps the file and checks its header
+     *
+     * @throws IOException if the file does not hold a cleanly closed map
+     */
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a map file: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (buffer.getLong(MAGIC_AT) != MAGIC) {
+                throw new IOException("Not a map file: " + file);
+            }
+            if (buffer.getInt(VERSION_AT) != VERSION) {
+                throw new IOException("Unsupported map file version "
+                        + buffer.getInt(VERSION_AT) + ": " + file);
+            }
+            if (buffer.getLong(CHECKSUM_AT) != checksum(buffer)) {
+                throw new IOException("Map header is torn: " + file);
+            }
+            if (buffer.getInt(CLEAN_AT) != 1) {
+                throw new IOException("Map was not closed cleanly: " + file);
+            }
+            capacity = buffer.getInt(CAPACITY_AT);
+            size = buffer.getInt(SIZE_AT);
+            removedCount = buffer.getInt(REMOVED_AT);
+            dataEnd = buffer.getLong(DATA_END_AT);
+            garbageBytes = buffer.getLong(GARBAGE_AT);
+            if (Integer.bitCount(capacity) != 1
+                    || dataStart(capacity) > dataEnd || dataEnd > length) {
+                throw new IOException("Map header is corrupt: " + file);
+            }
+            resetChanges();
+            dirty = false;
+        } catch (IOException e) {
+            channel.close();
+            channel = null;
+            buffer = null;
+            throw e;
+        }
+    }
+
+    /**
+     * writes a file holding an empty map
+     *
+     * @param target
+     *            file to write, replaced if it exists
+     * @param tableCapacity
+     *            number of index slots, a power of two
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeEmpty(Path target, int tableCapacity)
+        throws IOException {
+        long length = dataStart(tableCapacity) + INITIAL_DATA_BYTES;
+        try (FileChannel out = FileChannel.open(target,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer map = out.map(FileChannel.MapMode.READ_WRITE, 0,
+                    length);
+            writeHeader(map, tableCapacity, 0, 0, dataStart(tableCapacity),
+                    0);
+            map.force();
+        }
+    }
+
+    /**
+     * writes every header field, a clean flag and the checksum
+     *
+     * @param map
+     *            mapping of the file
+     * @param tableCapacity
+     *            number of index slots
+     * @param entries
+     *            number of live entries
+     * @param removed
+     *            number of removed slots
+     * @param end
+     *            first free byte of the data region
+     * @param garbage
+     *            bytes of records no slot points to
+     */
+    private static void writeHeader(ByteBuffer map, int tableCapacity,
+            int entries, int removed, long end, long garbage) {
+        map.putLong(MAGIC_AT, MAGIC);
+        map.putInt(VERSION_AT, VERSION);
+        map.putInt(CAPACITY_AT, tableCapacity);
+        map.putInt(SIZE_AT, entries);
+        map.putInt(REMOVED_AT, removed);
+        map.putLong(DATA_END_AT, end);
+        map.putLong(GARBAGE_AT, garbage);
+        map.putInt(CLEAN_AT, 1);
+        map.putLong(CHECKSUM_AT, checksum(map));
+    }
+
+    /**
+     * @param map
+     *            mapping of the file
+     * @return CRC32 of the header bytes before the checksum
+     */
+    private static long checksum(ByteBuffer map) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < CHECKSUM_AT; i++) {
+            crc.update(map.get(i));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @param tableCapacity
+     *            number of index slots
+     * @return offset of the first record
+     */
+    private static long dataStart(int tableCapacity) {
+        return HEADER_BYTES + (long) tableCapacity * SLOT_BYTES;
+    }
+
+    /**
+     * @param slot
+     *            slot of the index
+     * @return offset of the slot in the file
+     */
+    private static int slotAt(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * @throws IllegalStateException if the map has been closed
+     */
+    private void ensureOpen() {
+        if (channel == null) {
+            throw new IllegalStateException("Map has been closed");
+        }
+    }
+
+    /**
+     * clears the clean flag, and forces it out, before the first change
+     * since the last flush. Everything else was forced by that flush, so
+     * only the header is.
+     */
+    private void markDirty() {
+        if (!dirty) {
+            buffer.putInt(CLEAN_AT, 0);
+            buffer.putLong(CHECKSUM_AT, checksum(buffer));
+            buffer.force(0, HEADER_BYTES);
+            dirty = true;
+        }
+    }
+
+    /**
+     * widens the range of index bytes the next flush forces to take in slot
+     *
+     * @param slot
+     *            slot of the index that was written
+     */
+    private void slotChanged(int slot) {
+        changedFrom = Math.min(changedFrom, slotAt(slot));
+        changedTo = Math.max(changedTo, slotAt(slot) + SLOT_BYTES);
+    }
+
+    /**
+     * marks the slots and records in the file as forced
+     */
+    private void resetChanges() {
+        changedFrom = Integer.MAX_VALUE;
+        changedTo = 0;
+        flushedEnd = dataEnd;
+    }
+
+    /**
+     * applies the flush policy after a change
+     */
+    private void afterWrite() {
+        if (policy == FlushPolicy.EVERY_WRITE) {
+            flush();
+        }
+    }
+
+    /**
+     * makes sure the data region can take another record, remapping the
+     * file larger, or compacting it if most of it is garbage
+     *
+     * @param length
+     *            bytes of the record about to be appended
+     * @throws IllegalStateException if the file would pass 2GB
+     */
+    private void ensureDataRoom(int length) {
+        if (dataEnd + length <= buffer.capacity()) {
+            return;
+        }
+        if (garbageBytes > (dataEnd - dataStart(capacity)) / 2) {
+            regrow(capacity);
+            markDirty();
+            if (dataEnd + length <= buffer.capacity()) {
+                return;
+            }
+        }
+        long newLength = Math.max((long) buffer.capacity() * 2,
+                dataEnd + length);
+        if (newLength > Integer.MAX_VALUE) {
+            newLength = Integer.MAX_VALUE;
+            if (dataEnd + length > newLength) {
+                throw new IllegalStateException("Map file is full");
+            }
+        }
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    newLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * writes every live entry into a new file with the given number of
+     * slots, then moves it over the current file and maps it
+     *
+     * @param newCapacity
+     *            number of index slots of the new file, a power of two
+     */
+    private void regrow(int newCapacity) {
+        long liveBytes = dataEnd - dataStart(capacity) - garbageBytes;
+        long length = dataStart(newCapacity)
+                + Math.max(liveBytes * 2, INITIAL_DATA_BYTES);
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Map file is full");
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer map = out.map(FileChannel.MapMode.READ_WRITE,
+                        0, length);
+                int mask = newCapacity - 1;
+                long end = dataStart(newCapacity);
+                for (int i = 0; i < capacity; i++) {
+                    long address = buffer.getLong(slotAt(i));
+                    if (address > 0) {
+                        int hash = buffer.getInt(slotAt(i) + 8);
+                        int slot = hash & mask;
+                        for (int step = 1;
+                                map.getLong(slotAt(slot)) != EMPTY; step++) {
+                            slot = (slot + step) & mask;
+                        }
+                        int recordLength = recordLength(address);
+                        buffer.limit((int) address + recordLength);
+                        buffer.position((int) address);
+                        map.position((int) end);
+                        map.put(buffer);
+                        buffer.clear();
+                        map.clear();
+                        map.putLong(slotAt(slot), end);
+                        map.putInt(slotAt(slot) + 8, hash);
+                        end += recordLength;
+                    }
+                }
+                writeHeader(map, newCapacity, size, 0, end, 0);
+                map.force();
+            }
+            channel.close();
+            buffer = null;
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param key
+     *            key to look for
+     * @throws IllegalArgumentException if key is null
+     * @return slot of the key, negative if it is not in the map
+     */
+    private int lookup(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        ensureOpen();
+        int keyLength = serializeKey(key);
+        return find(Serializers.hash(scratch, keyLength), keyLength);
+    }
+
+    /**
+     * writes key into scratch, growing scratch if needed
+     *
+     * @param key
+     *            key to serialize
+     * @return number of bytes written
+     */
+    private int serializeKey(K key) {
+        int length = keySerializer.sizeOf(key);
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(Math.max(length,
+                    scratch.capacity() * 2));
+        }
+        scratch.clear();
+        keySerializer.write(key, scratch);
+        return length;
+    }
+
+    /**
+     * probes for the key held in scratch
+     *
+     * @param hash
+     *            hash of the key's bytes
+     * @param keyLength
+     *            bytes of scratch holding the key
+     * @return slot of the key if it is in the map, otherwise -(slot + 1)
+     * where slot is the first removed or empty slot on its probe sequence
+     */
+    private int find(int hash, int keyLength) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        int firstRemoved = -1;
+        for (int step = 1;; step++) {
+            long address = buffer.getLong(slotAt(slot));
+            if (address == EMPTY) {
+                return -(firstRemoved == -1 ? slot : firstRemoved) - 1;
+            } else if (address == REMOVED) {
+                if (firstRemoved == -1) {
+                    firstRemoved = slot;
+                }
+            } else if (buffer.getInt(slotAt(slot) + 8) == hash
+                    && keyEquals(address, keyLength)) {
+                return slot;
+            }
+            slot = (slot + step) & mask;
+        }
+    }
+
+    /**
+     * @param address
+     *            offset of a record
+     * @param keyLength
+     *            bytes of scratch holding the key
+     * @return whether the record's key bytes match scratch
+     */
+    private boolean keyEquals(long address, int keyLength) {
+        int start = (int) address;
+        if (buffer.getInt(start) != keyLength) {
+            return false;
+        }
+        start += RECORD_HEADER_BYTES;
+        for (int i = 0; i < keyLength; i++) {
+            if (buffer.get(start + i) != scratch.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param address
+     *            offset of a record
+     * @return number of bytes the record takes up
+     */
+    private int recordLength(long address) {
+        int start = (int) address;
+        return RECORD_HEADER_BYTES + buffer.getInt(start)
+                + buffer.getInt(start + 4);
+    }
+
+    /**
+     * @param address
+     *            offset of a record
+     * @return the deserialized key of the record
+     */
+    private K readKey(long address) {
+        int start = (int) address;
+        buffer.limit(start + RECORD_HEADER_BYTES + buffer.getInt(start));
+        buffer.position(start + RECORD_HEADER_BYTES);
+        K key = keySerializer.read(buffer);
+        buffer.clear();
+        return key;
+    }
+
+    /**
+     * @param address
+     *            offset of a record
+     * @return the deserialized value of the record
+     */
+    private V readValue(long address) {
+        int start = (int) address;
+        int valueStart = start + RECORD_HEADER_BYTES + buffer.getInt(start);
+        buffer.limit(valueStart + buffer.getInt(start + 4));
+        buffer.position(valueStart);
+        V value = valueSerializer.read(buffer);
+        buffer.clear();
+        return value;
+    }
+}
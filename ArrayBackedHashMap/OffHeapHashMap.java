@@ -0,0 +1,509 @@
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A hash map that keeps its entries outside of the Java heap. The index is a
+ * direct buffer of fixed size slots, each holding the address of a record
+ * and the hash of its key. Records are the serialized key and value, appended
+ * to a list of direct buffer chunks. The heap only holds the map object and
+ * its buffers, whatever the number of entries, so a large map adds no work
+ * for the garbage collector.
+ *
+ * Chunks are allocated as records need them, so an empty or cleared map
+ * holds only its small index.
+ *
+ * Replacing or removing a value leaves its old record behind as garbage.
+ * Once the garbage outweighs the live records the chunks are compacted.
+ * Keys are hashed and compared by their serialized bytes, never by their
+ * own hashCode and equals, so two keys that are equal must serialize to
+ * the same bytes.
+ *
+ * Call {@link #close()} when done with the map to drop its buffers. Java
+ * gives back the memory of a direct buffer once the buffer is collected.
+ *
+ * @version 1.0
+ */
+public class OffHeapHashMap<K, V> implements HashMapInterface<K, V>,
+        Closeable {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 26;
+
+    // long record address + 1, then int hash
+    private static final int SLOT_BYTES = 12;
+    private static final int STARTING_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 27;
+    private static final long EMPTY = 0;
+    private static final long REMOVED = -1;
+    // int key length, then int value length
+    private static final int HEADER_BYTES = 8;
+
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final int chunkSize;
+
+    private ByteBuffer index;
+    private int capacity;
+    private int size;
+    private int removedCount;
+    private ArrayList<ByteBuffer> chunks;
+    // next free byte of the last chunk
+    private int chunkPosition;
+    private long liveBytes;
+    private long garbageBytes;
+    // serialized form of the key being looked up
+    private ByteBuffer scratch;
+    private boolean closed;
+
+    /**
+     * Create a hash map with no entries that stores records in chunks of
+     * {@link #DEFAULT_CHUNK_SIZE} bytes.
+     *
+     * @param keySerializer serializer for the keys
+     * @param valueSerializer serializer for the values
+     */
+    public OffHeapHashMap(Serializer<K> keySerializer,
+            Serializer<V> valueSerializer) {
+        this(keySerializer, valueSerializer, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a hash map with no entries.
+     *
+     * @param keySerializer serializer for the keys
+     * @param valueSerializer serializer for the values
+     * @param chunkSize bytes in each chunk of record memory. No record can be
+     *            bigger than a chunk.
+     * @throws IllegalArgumentException if a serializer is null or chunkSize
+     *            cannot hold a record header
+     */
+    public OffHeapHashMap(Serializer<K> keySerializer,
+            Serializer<V> valueSerializer, int chunkSize) {
+        if (keySerializer == null || valueSerializer == null) {
+            throw new IllegalArgumentException("Serializers cannot be null");
+        }
+        if (chunkSize <= HEADER_BYTES) {
+            throw new IllegalArgumentException("Chunk size is too small");
+        }
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.chunkSize = chunkSize;
+        scratch = ByteBuffer.allocate(64);
+        clear();
+    }
+
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        ensureOpen();
+        int keyLength = serializeKey(key);
+        int valueLength = valueSerializer.sizeOf(value);
+        // checked before anything changes so a rejected add leaves the map
+        // as it was
+        if ((long) HEADER_BYTES + keyLength + valueLength > chunkSize) {
+            throw new IllegalArgumentException(
+                    "Entry is bigger than the chunk size");
+        }
+        if (size + removedCount + 1 > (int) (capacity * MAX_LOAD_FACTOR)) {
+            regrow();
+        }
+        int hash = Serializers.hash(scratch, keyLength);
+        int slot = find(hash, keyLength);
+        V old = null;
+        if (slot >= 0) {
+            long address = addressAt(slot);
+            old = readValue(address);
+            dropRecord(address);
+            // so a compaction while appending does not copy the old record
+            index.putLong(slot * SLOT_BYTES, REMOVED);
+        } else {
+            slot = -slot - 1;
+            if (index.getLong(slot * SLOT_BYTES) == REMOVED) {
+                removedCount--;
+            }
+            size++;
+        }
+        long address = append(keyLength, value, valueLength);
+        index.putLong(slot * SLOT_BYTES, address + 1);
+        index.putInt(slot * SLOT_BYTES + 8, hash);
+        return old;
+    }
+
+    @Override
+    public V remove(K key) {
+        int slot = lookup(key);
+        if (slot < 0) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        long address = addressAt(slot);
+        V old = readValue(address);
+        dropRecord(address);
+        index.putLong(slot * SLOT_BYTES, REMOVED);
+        removedCount++;
+        size--;
+        return old;
+    }
+
+    @Override
+    public V get(K key) {
+        int slot = lookup(key);
+        if (slot < 0) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return readValue(addressAt(slot));
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return lookup(key) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        ensureOpen();
+        capacity = STARTING_CAPACITY;
+        index = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        // the first chunk is only allocated by the first append
+        chunks = new ArrayList<ByteBuffer>();
+        chunkPosition = 0;
+        size = 0;
+        removedCount = 0;
+        liveBytes = 0;
+        garbageBytes = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Drops the index and every chunk. The map cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        index = null;
+        chunks = null;
+        size = 0;
+    }
+
+    /**
+     * Deserializes every slot into a new array. This is a copy, not a
+     * backing array.
+     *
+     * @return the table as entries, including empty spaces
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public MapEntry<K, V>[] toArray() {
+        ensureOpen();
+        MapEntry<K, V>[] table = new MapEntry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            if (index.getLong(i * SLOT_BYTES) > 0) {
+                long address = addressAt(i);
+                table[i] = new MapEntry<K, V>(readKey(address),
+                        readValue(address));
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        ensureOpen();
+        HashSet<K> keys = new HashSet<K>();
+        for (int i = 0; i < capacity; i++) {
+            if (index.getLong(i * SLOT_BYTES) > 0) {
+                keys.add(readKey(addressAt(i)));
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public List<V> values() {
+        ensureOpen();
+        LinkedList<V> vals = new LinkedList<V>();
+        for (int i = 0; i < capacity; i++) {
+            if (index.getLong(i * SLOT_BYTES) > 0) {
+                vals.add(readValue(addressAt(i)));
+            }
+        }
+        return vals;
+    }
+
+    /**
+     * @throws IllegalStateException if the map has been closed
+     */
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Map has been closed");
+        }
+    }
+
+    /**
+     * @param key
+     *            key to look for
+     * @throws IllegalArgumentException if key is null
+     * @return slot of the key, negative if it is not in the map
+     */
+    private int lookup(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        ensureOpen();
+        int keyLength = serializeKey(key);
+        return find(Serializers.hash(scratch, keyLength), keyLength);
+    }
+
+    /**
+     * writes key into scratch, growing scratch if needed
+     *
+     * @param key
+     *            key to serialize
+     * @return number of bytes written
+     */
+    private int serializeKey(K key) {
+        int length = keySerializer.sizeOf(key);
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(Math.max(length,
+                    scratch.capacity() * 2));
+        }
+        scratch.clear();
+        keySerializer.write(key, scratch);
+        return length;
+    }
+
+    /**
+     * probes for the key held in scratch
+     *
+     * @param hash
+     *            hash of the key's bytes
+     * @param keyLength
+     *            bytes of scratch holding the key
+     * @return slot of the key if it is in the map, otherwise -(slot + 1)
+     * where slot is the first removed or empty slot on its probe sequence
+     */
+    private int find(int hash, int keyLength) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        int firstRemoved = -1;
+        for (int step = 1;; step++) {
+            long stored = index.getLong(slot * SLOT_BYTES);
+            if (stored == EMPTY) {
+                return -(firstRemoved == -1 ? slot : firstRemoved) - 1;
+            } else if (stored == REMOVED) {
+                if (firstRemoved == -1) {
+                    firstRemoved = slot;
+                }
+            } else if (index.getInt(slot * SLOT_BYTES + 8) == hash
+                    && keyEquals(stored - 1, keyLength)) {
+                return slot;
+            }
+            slot = (slot + step) & mask;
+        }
+    }
+
+    /**
+     * @param slot
+     *            slot of the index holding a live entry
+     * @return address of the slot's record
+     */
+    private long addressAt(int slot) {
+        return index.getLong(slot * SLOT_BYTES) - 1;
+    }
+
+    /**
+     * @param address
+     *            address of a record
+     * @param keyLength
+     *            bytes of scratch holding the key
+     * @return whether the record's key bytes match scratch
+     */
+    private boolean keyEquals(long address, int keyLength) {
+        ByteBuffer chunk = chunks.get((int) (address / chunkSize));
+        int start = (int) (address % chunkSize);
+        if (chunk.getInt(start) != keyLength) {
+            return false;
+        }
+        start += HEADER_BYTES;
+        int i = 0;
+        for (; i + Long.BYTES <= keyLength; i += Long.BYTES) {
+            if (chunk.getLong(start + i) != scratch.getLong(i)) {
+                return false;
+            }
+        }
+        for (; i < keyLength; i++) {
+            if (chunk.get(start + i) != scratch.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param address
+     *            address of a record
+     * @return the deserialized key of the record
+     */
+    private K readKey(long address) {
+        ByteBuffer chunk = chunks.get((int) (address / chunkSize));
+        int start = (int) (address % chunkSize);
+        int keyLength = chunk.getInt(start);
+        chunk.limit(start + HEADER_BYTES + keyLength);
+        chunk.position(start + HEADER_BYTES);
+        K key = keySerializer.read(chunk);
+        chunk.clear();
+        return key;
+    }
+
+    /**
+     * @param address
+     *            address of a record
+     * @return the deserialized value of the record
+     */
+    private V readValue(long address) {
+        ByteBuffer chunk = chunks.get((int) (address / chunkSize));
+        int start = (int) (address % chunkSize);
+        int valueStart = start + HEADER_BYTES + chunk.getInt(start);
+        chunk.limit(valueStart + chunk.getInt(start + 4));
+        chunk.position(valueStart);
+        V value = valueSerializer.read(chunk);
+        chunk.clear();
+        return value;
+    }
+
+    /**
+     * @param address
+     *            address of a record
+     * @return number of bytes the record takes up
+     */
+    private int recordLength(long address) {
+        ByteBuffer chunk = chunks.get((int) (address / chunkSize));
+        int start = (int) (address % chunkSize);
+        return HEADER_BYTES + chunk.getInt(start) + chunk.getInt(start + 4);
+    }
+
+    /**
+     * counts a record as garbage
+     *
+     * @param address
+     *            address of the record no longer referenced
+     */
+    private void dropRecord(long address) {
+        int length = recordLength(address);
+        liveBytes -= length;
+        garbageBytes += length;
+    }
+
+    /**
+     * appends a record made of the key in scratch and value
+     *
+     * @param keyLength
+     *            bytes of scratch holding the key
+     * @param value
+     *            value to write
+     * @param valueLength
+     *            serialized size of value, already checked to fit a chunk
+     * @return address of the new record
+     */
+    private long append(int keyLength, V value, int valueLength) {
+        int length = HEADER_BYTES + keyLength + valueLength;
+        if (chunks.isEmpty() || chunkPosition + length > chunkSize) {
+            if (garbageBytes > liveBytes) {
+                compactChunks();
+            }
+            if (chunks.isEmpty() || chunkPosition + length > chunkSize) {
+                chunks.add(ByteBuffer.allocateDirect(chunkSize));
+                chunkPosition = 0;
+            }
+        }
+        ByteBuffer chunk = chunks.get(chunks.size() - 1);
+        long address = (long) (chunks.size() - 1) * chunkSize + chunkPosition;
+        chunk.position(chunkPosition);
+        chunk.putInt(keyLength);
+        chunk.putInt(valueLength);
+        scratch.limit(keyLength).position(0);
+        chunk.put(scratch);
+        valueSerializer.write(value, chunk);
+        chunk.clear();
+        chunkPosition += length;
+        liveBytes += length;
+        return address;
+    }
+
+    /**
+     * copies every live record into fresh chunks, dropping the garbage.
+     * Allocates no chunk at all if no record is live.
+     */
+    private void compactChunks() {
+        ArrayList<ByteBuffer> oldChunks = chunks;
+        chunks = new ArrayList<ByteBuffer>();
+        chunkPosition = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long stored = index.getLong(slot * SLOT_BYTES);
+            if (stored > 0) {
+                long address = stored - 1;
+                ByteBuffer from = oldChunks.get((int) (address / chunkSize));
+                int start = (int) (address % chunkSize);
+                int length = HEADER_BYTES + from.getInt(start)
+                        + from.getInt(start + 4);
+                if (chunks.isEmpty() || chunkPosition + length > chunkSize) {
+                    chunks.add(ByteBuffer.allocateDirect(chunkSize));
+                    chunkPosition = 0;
+                }
+                ByteBuffer to = chunks.get(chunks.size() - 1);
+                index.putLong(slot * SLOT_BYTES,
+                        (long) (chunks.size() - 1) * chunkSize + chunkPosition
+                        + 1);
+                from.limit(start + length).position(start);
+                to.position(chunkPosition);
+                to.put(from);
+                from.clear();
+                to.clear();
+                chunkPosition += length;
+            }
+        }
+        garbageBytes = 0;
+    }
+
+    /**
+     * rebuilds the index, doubling it unless the live entries still fit and
+     * only removed slots need to go. Records do not move.
+     */
+    private void regrow() {
+        int newCapacity = capacity;
+        if (size + 1 > (int) (capacity * MAX_LOAD_FACTOR / 2)) {
+            if (capacity == MAX_CAPACITY) {
+                throw new IllegalStateException("Map is full");
+            }
+            newCapacity = capacity * 2;
+        }
+        ByteBuffer oldIndex = index;
+        int oldCapacity = capacity;
+        index = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES);
+        capacity = newCapacity;
+        removedCount = 0;
+        int mask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            long stored = oldIndex.getLong(i * SLOT_BYTES);
+            if (stored > 0) {
+                int hash = oldIndex.getInt(i * SLOT_BYTES + 8);
+                int slot = hash & mask;
+                for (int step = 1; index.getLong(slot * SLOT_BYTES) != EMPTY;
+                        step++) {
+                    slot = (slot + step) & mask;
+                }
+                index.putLong(slot * SLOT_BYTES, stored);
+                index.putInt(slot * SLOT_BYTES + 8, hash);
+            }
+        }
+    }
+}
@@ -0,0 +1,417 @@
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A hash set that stores its keys straight in an open-addressing table, with
+ * the same odd table lengths and quadratic probing as HashMap. There is no
+ * entry object and no value per key, so it takes one reference per slot
+ * where a {@code HashMap<K, Boolean>} takes an entry of four fields.
+ * Removed keys leave a shared marker object in their slot, and the table is
+ * rehashed in place once too many slots hold it.
+ *
+ * forEach walks the table without allocating anything, and iterator only
+ * allocates the iterator itself.
+ *
+ * @version 1.0
+ */
+public class OpenHashSet<K> extends AbstractSet<K> {
+    public static final double MAX_REMOVED_RATIO = 0.25;
+
+    // left in the slot of a removed key so probes keep going past it
+    private static final Object REMOVED = new Object();
+
+    private Object[] table;
+    private int size;
+    private int removedCount;
+    private int modCount;
+
+    /**
+     * Create a set with no keys.
+     */
+    public OpenHashSet() {
+        this(0);
+    }
+
+    /**
+     * Create a set with no keys whose table can take expectedSize keys
+     * without regrowing.
+     *
+     * @param expectedSize number of keys the set is expected to hold
+     * @throws IllegalArgumentException if expectedSize is negative
+     */
+    public OpenHashSet(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException(
+                    "Expected size cannot be negative");
+        }
+        table = new Object[tableLengthFor(expectedSize)];
+    }
+
+    /**
+     * Create a set holding every key of a collection.
+     *
+     * @param keys keys to add
+     * @throws IllegalArgumentException if keys is null or holds a null
+     */
+    public OpenHashSet(Collection<? extends K> keys) {
+        this(keys == null ? 0 : keys.size());
+        if (keys == null) {
+            throw new IllegalArgumentException("Collection cannot be null");
+        }
+        for (K key : keys) {
+            add(key);
+        }
+    }
+
+    /**
+     * Adds the key if it is not already in the set.
+     * Should run in O(1) with a good hash function, O(n) otherwise
+     *
+     * @param key key to add
+     * @throws IllegalArgumentException if key is null
+     * @return true if the key was added, false if it was already there
+     */
+    @Override
+    public boolean add(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        if (size + 1
+                > (int) (table.length * HashMapInterface.MAX_LOAD_FACTOR)) {
+            rehash(table.length * 2 + 1);
+        }
+        int ogIndex = (key.hashCode() & 0x7fffffff) % table.length;
+        int index = ogIndex;
+        int firstRemoved = -1;
+        for (int quadratic = 1; quadratic <= table.length; quadratic++) {
+            if (table[index] == null) {
+                if (firstRemoved == -1) {
+                    firstRemoved = index;
+                }
+                break;
+            } else if (table[index] == REMOVED) {
+                if (firstRemoved == -1) {
+                    firstRemoved = index;
+                }
+            } else if (table[index].equals(key)) {
+                return false;
+            }
+            index = probe(ogIndex, quadratic);
+        }
+        if (firstRemoved == -1) {
+            rehash(table.length * 2 + 1);
+            return add(key);
+        }
+        if (table[firstRemoved] == REMOVED) {
+            removedCount--;
+        }
+        table[firstRemoved] = key;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the key if it is in the set.
+     * Should run in O(1) with a good hash function, O(n) otherwise
+     *
+     * @param o key to remove
+     * @return true if the key was removed, false if it was not there
+     */
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index == -1) {
+            return false;
+        }
+        removeAt(index);
+        if (removedCount > (int) (table.length * MAX_REMOVED_RATIO)) {
+            rehash(table.length);
+        }
+        return true;
+    }
+
+    /**
+     * Should run in O(1) with a good hash function, O(n) otherwise
+     *
+     * @param o key to look for
+     * @return whether the key is in the set
+     */
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) != -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        table = new Object[HashMapInterface.STARTING_SIZE];
+        size = 0;
+        removedCount = 0;
+        modCount++;
+    }
+
+    /**
+     * Returns a new set of the keys in this set, the other set or both.
+     * Should be O(n + m)
+     *
+     * @param other set to combine with
+     * @throws IllegalArgumentException if other is null
+     * @return the union of the two sets
+     */
+    public OpenHashSet<K> union(OpenHashSet<? extends K> other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Set cannot be null");
+        }
+        OpenHashSet<K> result = new OpenHashSet<K>(size + other.size);
+        result.addKeysOf(this);
+        result.addKeysOf(other);
+        return result;
+    }
+
+    /**
+     * Returns a new set of the keys in both this set and the other set.
+     * Only the smaller set is walked, so it runs in O(min(n, m)).
+     *
+     * @param other set to intersect with
+     * @throws IllegalArgumentException if other is null
+     * @return the intersection of the two sets
+     */
+    @SuppressWarnings("unchecked")
+    public OpenHashSet<K> intersection(OpenHashSet<? extends K> other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Set cannot be null");
+        }
+        OpenHashSet<?> smaller = size <= other.size ? this : other;
+        OpenHashSet<?> larger = smaller == this ? other : this;
+        OpenHashSet<K> result = new OpenHashSet<K>(smaller.size);
+        Object[] from = smaller.table;
+        for (int i = 0; i < from.length; i++) {
+            if (from[i] != null && from[i] != REMOVED
+                    && larger.indexOf(from[i]) != -1) {
+                result.add((K) from[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs action on every key, straight off the table, without allocating
+     * an iterator.
+     *
+     * @param action action to run on each key
+     * @throws IllegalArgumentException if action is null
+     * @throws ConcurrentModificationException if action changes the set
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super K> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+        int expectedModCount = modCount;
+        Object[] tab = table;
+        for (int i = 0; i < tab.length; i++) {
+            if (tab[i] != null && tab[i] != REMOVED) {
+                action.accept((K) tab[i]);
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over the keys. Removing through the iterator
+     * removes from the set; changing the set any other way while iterating
+     * makes the iterator throw a ConcurrentModificationException.
+     *
+     * @return iterator over the keys
+     */
+    @Override
+    public Iterator<K> iterator() {
+        return new KeyIterator();
+    }
+
+    /**
+     * adds every key of another set without growing more than once
+     *
+     * @param other
+     *            set to copy the keys of
+     */
+    @SuppressWarnings("unchecked")
+    private void addKeysOf(OpenHashSet<? extends K> other) {
+        Object[] from = other.table;
+        for (int i = 0; i < from.length; i++) {
+            if (from[i] != null && from[i] != REMOVED) {
+                add((K) from[i]);
+            }
+        }
+    }
+
+    /**
+     * @param o
+     *            key to look for
+     * @return index of the key, -1 if it is not in the set
+     */
+    private int indexOf(Object o) {
+        if (o == null) {
+            return -1;
+        }
+        int ogIndex = (o.hashCode() & 0x7fffffff) % table.length;
+        int index = ogIndex;
+        for (int quadratic = 1; quadratic <= table.length; quadratic++) {
+            if (table[index] == null) {
+                return -1;
+            } else if (table[index] != REMOVED && table[index].equals(o)) {
+                return index;
+            }
+            index = probe(ogIndex, quadratic);
+        }
+        return -1;
+    }
+
+    /**
+     * puts the removed marker in the slot at index
+     *
+     * @param index
+     *            slot of the key
+     */
+    private void removeAt(int index) {
+        table[index] = REMOVED;
+        removedCount++;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * moves every key into a new table, dropping removed markers
+     *
+     * @param length
+     *            length of the new table
+     */
+    private void rehash(int length) {
+        Object[] tempTable = table;
+        boolean placed = false;
+        while (!placed) {
+            table = new Object[length];
+            placed = true;
+            for (int i = 0; i < tempTable.length && placed; i++) {
+                if (tempTable[i] != null && tempTable[i] != REMOVED) {
+                    placed = place(tempTable[i]);
+                }
+            }
+            length = length * 2 + 1;
+        }
+        removedCount = 0;
+        modCount++;
+    }
+
+    /**
+     * puts a key that is not in the table into the first empty slot of its
+     * probe sequence
+     *
+     * @param key
+     *            key to place
+     * @return false if the probe sequence has no empty slot
+     */
+    private boolean place(Object key) {
+        int ogIndex = (key.hashCode() & 0x7fffffff) % table.length;
+        int index = ogIndex;
+        for (int quadratic = 1; quadratic <= table.length; quadratic++) {
+            if (table[index] == null) {
+                table[index] = key;
+                return true;
+            }
+            index = probe(ogIndex, quadratic);
+        }
+        return false;
+    }
+
+    /**
+     * finds the next slot on the quadratic probe sequence
+     *
+     * @param ogIndex
+     *            original hash index
+     * @param quadratic
+     *            current quadratic that is being added
+     * @return the index of the next slot on the probe sequence
+     */
+    private int probe(int ogIndex, int quadratic) {
+        return (int) ((ogIndex + (long) quadratic * quadratic) % table.length);
+    }
+
+    /**
+     * @param expectedSize
+     *            number of keys to fit
+     * @return odd table length that takes expectedSize keys under the load
+     *         factor, at least STARTING_SIZE
+     */
+    private static int tableLengthFor(int expectedSize) {
+        long length = (long) (expectedSize
+                / HashMapInterface.MAX_LOAD_FACTOR) + 2;
+        if (length <= HashMapInterface.STARTING_SIZE) {
+            return HashMapInterface.STARTING_SIZE;
+        }
+        return (int) Math.min(length | 1, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Iterator over the keys, walking the table in slot order.
+     */
+    private final class KeyIterator implements Iterator<K> {
+        // next slot to look at
+        private int cursor;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            checkForChange();
+            while (cursor < table.length
+                    && (table[cursor] == null || table[cursor] == REMOVED)) {
+                cursor++;
+            }
+            return cursor < table.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more keys");
+            }
+            lastReturned = cursor++;
+            return (K) table[lastReturned];
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == -1) {
+                throw new IllegalStateException("Nothing to remove");
+            }
+            checkForChange();
+            removeAt(lastReturned);
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the set changed other
+         *             than through this iterator
+         */
+        private void checkForChange() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
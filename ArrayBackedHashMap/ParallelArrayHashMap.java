@@ -0,0 +1,255 @@
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A hash map that stores its keys and values in parallel arrays instead of
+ * an array of {@link MapEntry}. Removed slots are marked in a bitmap rather
+ * than on the entry, so a probe reads the key straight out of the keys array
+ * without going through an entry object first.
+ *
+ * @version 1.0
+ */
+public class ParallelArrayHashMap<K, V> implements HashMapInterface<K, V> {
+
+    private K[] keys;
+    private V[] values;
+    private long[] removed;
+    private int size;
+
+    /**
+     * Create a hash map with no entries.
+     */
+    public ParallelArrayHashMap() {
+        clear();
+    }
+
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        if (size + 1 > (int) (keys.length * MAX_LOAD_FACTOR)) {
+            regrow();
+        }
+        int ogIndex = hash(key);
+        int index = ogIndex;
+        int firstRemoved = -1;
+        for (int quadratic = 1; quadratic <= keys.length; quadratic++) {
+            if (keys[index] == null) {
+                if (firstRemoved == -1) {
+                    firstRemoved = index;
+                }
+                break;
+            } else if (isRemoved(index)) {
+                if (firstRemoved == -1) {
+                    firstRemoved = index;
+                }
+            } else if (keys[index].equals(key)) {
+                V old = values[index];
+                values[index] = value;
+                return old;
+            }
+            index = probe(ogIndex, quadratic);
+        }
+        // after a certain amount of time, it is not efficient to
+        // continue looking for spots
+        if (firstRemoved == -1) {
+            regrow();
+            return add(key, value);
+        }
+        keys[firstRemoved] = key;
+        values[firstRemoved] = value;
+        setRemoved(firstRemoved, false);
+        size++;
+        return null;
+    }
+
+    @Override
+    public V remove(K key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        V old = values[index];
+        // the key stays to mark the slot as used, but the value can go
+        values[index] = null;
+        setRemoved(index, true);
+        size--;
+        return old;
+    }
+
+    @Override
+    public V get(K key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return values[index];
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        keys = (K[]) new Object[STARTING_SIZE];
+        values = (V[]) new Object[STARTING_SIZE];
+        removed = new long[bitmapLength(STARTING_SIZE)];
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Builds a copy of the table in {@link MapEntry} form. Unlike
+     * {@link HashMap#toArray()} this is not the backing array, so changing
+     * the entries does not change the map.
+     *
+     * @return the table as entries, including empty spaces
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public MapEntry<K, V>[] toArray() {
+        MapEntry<K, V>[] table = new MapEntry[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                table[i] = new MapEntry<K, V>(keys[i], values[i]);
+                table[i].setRemoved(isRemoved(i));
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        HashSet<K> set = new HashSet<K>();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && !isRemoved(i)) {
+                set.add(keys[i]);
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public List<V> values() {
+        LinkedList<V> vals = new LinkedList<V>();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && !isRemoved(i)) {
+                vals.add(values[i]);
+            }
+        }
+        return vals;
+    }
+
+    /**
+     * finds the slot holding key
+     *
+     * @param key
+     *            key to look for
+     * @throws IllegalArgumentException if key is null
+     * @return index of the key, -1 if it is not in the map
+     */
+    private int indexOf(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int ogIndex = hash(key);
+        int index = ogIndex;
+        for (int quadratic = 1; quadratic <= keys.length; quadratic++) {
+            if (keys[index] == null) {
+                return -1;
+            } else if (!isRemoved(index) && keys[index].equals(key)) {
+                return index;
+            }
+            index = probe(ogIndex, quadratic);
+        }
+        return -1;
+    }
+
+    /**
+     * @param index
+     *            slot to check
+     * @return whether the slot holds a removed entry
+     */
+    private boolean isRemoved(int index) {
+        return (removed[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * marks or unmarks a slot as removed
+     *
+     * @param index
+     *            slot to mark
+     * @param isRemoved
+     *            true if the slot should be marked removed
+     */
+    private void setRemoved(int index, boolean isRemoved) {
+        if (isRemoved) {
+            removed[index >>> 6] |= 1L << index;
+        } else {
+            removed[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * @param capacity
+     *            number of slots in the table
+     * @return number of longs needed to hold one bit per slot
+     */
+    private static int bitmapLength(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+
+    /**
+     * @param key
+     *            key to hash
+     * @return original index of the key
+     */
+    private int hash(K key) {
+        return (key.hashCode() & 0x7fffffff) % keys.length;
+    }
+
+    /**
+     * finds the next slot on the quadratic probe sequence
+     *
+     * @param ogIndex
+     *            original hash index
+     * @param quadratic
+     *            current quadratic that is being added
+     * @return the index of the next slot on the probe sequence
+     */
+    private int probe(int ogIndex, int quadratic) {
+        return (int) ((ogIndex + (long) quadratic * quadratic) % keys.length);
+    }
+
+    /**
+     * regrows table to 2n +1 size
+     */
+    @SuppressWarnings("unchecked")
+    private void regrow() {
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+        long[] oldRemoved = removed;
+        int newLength = oldKeys.length * 2 + 1;
+        keys = (K[]) new Object[newLength];
+        values = (V[]) new Object[newLength];
+        removed = new long[bitmapLength(newLength)];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null
+                    && (oldRemoved[i >>> 6] & (1L << i)) == 0) {
+                add(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A hash map whose table length is always a power of two. Hash codes are run
+ * through a bit mixer and masked into the table instead of taken modulo an
+ * odd length, so no probe step needs a division. Probing is triangular (the
+ * step grows by one each time), which visits every slot of a power of two
+ * table before repeating, so an add never has to give up and regrow early.
+ *
+ * @version 1.0
+ */
+public class PowerOfTwoHashMap<K, V> implements HashMapInterface<K, V> {
+    public static final int STARTING_CAPACITY = 16;
+
+    private MapEntry<K, V>[] table;
+    private int size;
+    // entries marked as removed that still take up a slot
+    private int removedCount;
+
+    /**
+     * Create a hash map with no entries.
+     */
+    public PowerOfTwoHashMap() {
+        clear();
+    }
+
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        int threshold = (int) (table.length * MAX_LOAD_FACTOR);
+        if (size + removedCount + 1 > threshold) {
+            // only grow if the live entries need it, otherwise just clear
+            // out the removed ones
+            rehash(size + 1 > threshold ? table.length * 2 : table.length);
+        }
+        int hash = key.hashCode();
+        int mask = table.length - 1;
+        int index = mix(hash) & mask;
+        int firstRemoved = -1;
+        for (int step = 1; table[index] != null; step++) {
+            if (table[index].isRemoved()) {
+                if (firstRemoved == -1) {
+                    firstRemoved = index;
+                }
+            } else if (table[index].getHash() == hash
+                    && table[index].getKey().equals(key)) {
+                V old = table[index].getValue();
+                table[index].setValue(value);
+                return old;
+            }
+            index = (index + step) & mask;
+        }
+        if (firstRemoved != -1) {
+            index = firstRemoved;
+            removedCount--;
+        }
+        table[index] = new MapEntry<K, V>(key, value, hash);
+        size++;
+        return null;
+    }
+
+    @Override
+    public V remove(K key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        table[index].setRemoved(true);
+        removedCount++;
+        size--;
+        return table[index].getValue();
+    }
+
+    @Override
+    public V get(K key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return table[index].getValue();
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * Rehashes every entry into a table of the same size, dropping all
+     * entries marked as removed so they no longer lengthen probes.
+     * Should be O(n)
+     */
+    public void compact() {
+        if (removedCount > 0) {
+            rehash(table.length);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        table = new MapEntry[STARTING_CAPACITY];
+        size = 0;
+        removedCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public MapEntry<K, V>[] toArray() {
+        return table;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        HashSet<K> keys = new HashSet<K>();
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null && !table[i].isRemoved()) {
+                keys.add(table[i].getKey());
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public List<V> values() {
+        LinkedList<V> vals = new LinkedList<V>();
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null && !table[i].isRemoved()) {
+                vals.add(table[i].getValue());
+            }
+        }
+        return vals;
+    }
+
+    /**
+     * finds the slot holding key
+     *
+     * @param key
+     *            key to look for
+     * @throws IllegalArgumentException if key is null
+     * @return index of the key, -1 if it is not in the map
+     */
+    private int indexOf(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int hash = key.hashCode();
+        int mask = table.length - 1;
+        int index = mix(hash) & mask;
+        for (int step = 1; table[index] != null; step++) {
+            if (!table[index].isRemoved() && table[index].getHash() == hash
+                    && table[index].getKey().equals(key)) {
+                return index;
+            }
+            index = (index + step) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Spreads every bit of a hash code over the low bits used by the mask.
+     * This is the finalizer of MurmurHash3.
+     *
+     * @param hash
+     *            hash code to mix
+     * @return the mixed hash
+     */
+    static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * re-adds every live entry into a new table
+     *
+     * @param length
+     *            length of the new table, a power of two
+     */
+    @SuppressWarnings("unchecked")
+    private void rehash(int length) {
+        MapEntry<K, V>[] tempTable = table;
+        table = new MapEntry[length];
+        removedCount = 0;
+        int mask = length - 1;
+        for (int i = 0; i < tempTable.length; i++) {
+            MapEntry<K, V> entry = tempTable[i];
+            if (entry != null && !entry.isRemoved()) {
+                int index = mix(entry.getHash()) & mask;
+                for (int step = 1; table[index] != null; step++) {
+                    index = (index + step) & mask;
+                }
+                table[index] = entry;
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A hash map that uses Robin Hood linear probing. Every slot remembers how
+ * far it sits from its home index, and an insert takes the slot of any entry
+ * that is closer to home than itself. That keeps probe lengths short and even
+ * at high load factors, lets a lookup for a missing key stop as soon as it
+ * passes entries that are closer to home than the key would be, and lets
+ * remove shift the following entries back instead of leaving a removed
+ * marker.
+ *
+ * @version 1.0
+ */
+public class RobinHoodHashMap<K, V> implements HashMapInterface<K, V> {
+    public static final double DEFAULT_LOAD_FACTOR = 0.9;
+
+    private K[] keys;
+    private V[] values;
+    // probe distance plus one, so 0 marks an empty slot
+    private int[] distances;
+    private int size;
+    private final double loadFactor;
+
+    /**
+     * Create a hash map with no entries that regrows once it is
+     * {@link #DEFAULT_LOAD_FACTOR} full.
+     */
+    public RobinHoodHashMap() {
+        this(DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Create a hash map with no entries.
+     *
+     * @param loadFactor fraction of the table that may be filled before it
+     *            regrows
+     * @throws IllegalArgumentException if loadFactor is not between 0 and 1
+     */
+    public RobinHoodHashMap(double loadFactor) {
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException(
+                    "Load factor must be between 0 and 1");
+        }
+        this.loadFactor = loadFactor;
+        clear();
+    }
+
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        if (size + 1 > (int) (keys.length * loadFactor)) {
+            regrow();
+        }
+        int index = hash(key);
+        int distance = 1;
+        boolean displaced = false;
+        while (distances[index] != 0) {
+            if (!displaced && distances[index] == distance
+                    && keys[index].equals(key)) {
+                V old = values[index];
+                values[index] = value;
+                return old;
+            }
+            if (distances[index] < distance) {
+                // the resident is closer to home, so it gives up its slot
+                K tempKey = keys[index];
+                V tempValue = values[index];
+                int tempDistance = distances[index];
+                keys[index] = key;
+                values[index] = value;
+                distances[index] = distance;
+                key = tempKey;
+                value = tempValue;
+                distance = tempDistance;
+                displaced = true;
+            }
+            index = next(index);
+            distance++;
+        }
+        keys[index] = key;
+        values[index] = value;
+        distances[index] = distance;
+        size++;
+        return null;
+    }
+
+    @Override
+    public V remove(K key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        V old = values[index];
+        int next = next(index);
+        while (distances[next] > 1) {
+            keys[index] = keys[next];
+            values[index] = values[next];
+            distances[index] = distances[next] - 1;
+            index = next;
+            next = next(next);
+        }
+        keys[index] = null;
+        values[index] = null;
+        distances[index] = 0;
+        size--;
+        return old;
+    }
+
+    @Override
+    public V get(K key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return values[index];
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        keys = (K[]) new Object[STARTING_SIZE];
+        values = (V[]) new Object[STARTING_SIZE];
+        distances = new int[STARTING_SIZE];
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Builds a copy of the table in {@link MapEntry} form. Removes shift
+     * entries back, so no entry is ever marked as removed.
+     *
+     * @return the table as entries, including empty spaces
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public MapEntry<K, V>[] toArray() {
+        MapEntry<K, V>[] table = new MapEntry[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (distances[i] != 0) {
+                table[i] = new MapEntry<K, V>(keys[i], values[i]);
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        HashSet<K> set = new HashSet<K>();
+        for (int i = 0; i < keys.length; i++) {
+            if (distances[i] != 0) {
+                set.add(keys[i]);
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public List<V> values() {
+        LinkedList<V> vals = new LinkedList<V>();
+        for (int i = 0; i < keys.length; i++) {
+            if (distances[i] != 0) {
+                vals.add(values[i]);
+            }
+        }
+        return vals;
+    }
+
+    /**
+     * finds the slot holding key, giving up as soon as the probe reaches a
+     * slot that is closer to its home than key would be
+     *
+     * @param key
+     *            key to look for
+     * @throws IllegalArgumentException if key is null
+     * @return index of the key, -1 if it is not in the map
+     */
+    private int indexOf(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int index = hash(key);
+        int distance = 1;
+        while (distances[index] >= distance) {
+            if (distances[index] == distance && keys[index].equals(key)) {
+                return index;
+            }
+            index = next(index);
+            distance++;
+        }
+        return -1;
+    }
+
+    /**
+     * @param key
+     *            key to hash
+     * @return home index of the key
+     */
+    private int hash(K key) {
+        return (key.hashCode() & 0x7fffffff) % keys.length;
+    }
+
+    /**
+     * @param index
+     *            current slot
+     * @return the slot after index, wrapping around the end of the table
+     */
+    private int next(int index) {
+        index++;
+        return index == keys.length ? 0 : index;
+    }
+
+    /**
+     * regrows table to 2n +1 size
+     */
+    @SuppressWarnings("unchecked")
+    private void regrow() {
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+        int[] oldDistances = distances;
+        int newLength = oldKeys.length * 2 + 1;
+        keys = (K[]) new Object[newLength];
+        values = (V[]) new Object[newLength];
+        distances = new int[newLength];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldDistances[i] != 0) {
+                add(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
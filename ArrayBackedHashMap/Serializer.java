@@ -0,0 +1,37 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Turns objects into bytes and back for maps that keep their entries outside
+ * of the Java heap.
+ *
+ * @param <T> type of the objects serialized
+ * @version 1.0
+ */
+public interface Serializer<T> {
+
+    /**
+     * Finds how many bytes an object takes up once serialized.
+     *
+     * @param data the object to measure
+     * @return number of bytes write will put for data
+     */
+    int sizeOf(T data);
+
+    /**
+     * Writes an object at the buffer's position, advancing it by exactly
+     * {@code sizeOf(data)} bytes.
+     *
+     * @param data the object to write
+     * @param out buffer to write to
+     */
+    void write(T data, ByteBuffer out);
+
+    /**
+     * Reads an object back from every remaining byte of the buffer.
+     *
+     * @param in buffer positioned at the first byte of the object, with its
+     *            limit at the last
+     * @return the object that was written
+     */
+    T read(ByteBuffer in);
+}
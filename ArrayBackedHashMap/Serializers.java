@@ -0,0 +1,132 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializers for common key and value types.
+ *
+ * @version 1.0
+ */
+public final class Serializers {
+
+    /**
+     * Writes an Integer as 4 big endian bytes.
+     */
+    public static final Serializer<Integer> INTEGER =
+            new Serializer<Integer>() {
+        @Override
+        public int sizeOf(Integer data) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(Integer data, ByteBuffer out) {
+            out.putInt(data);
+        }
+
+        @Override
+        public Integer read(ByteBuffer in) {
+            return in.getInt();
+        }
+    };
+
+    /**
+     * Writes a Long as 8 big endian bytes.
+     */
+    public static final Serializer<Long> LONG = new Serializer<Long>() {
+        @Override
+        public int sizeOf(Long data) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(Long data, ByteBuffer out) {
+            out.putLong(data);
+        }
+
+        @Override
+        public Long read(ByteBuffer in) {
+            return in.getLong();
+        }
+    };
+
+    /**
+     * Writes a String as its UTF-8 bytes.
+     */
+    public static final Serializer<String> STRING = new Serializer<String>() {
+        @Override
+        public int sizeOf(String data) {
+            return data.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void write(String data, ByteBuffer out) {
+            out.put(data.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String read(ByteBuffer in) {
+            byte[] bytes = new byte[in.remaining()];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Writes a byte array as is.
+     */
+    public static final Serializer<byte[]> BYTES = new Serializer<byte[]>() {
+        @Override
+        public int sizeOf(byte[] data) {
+            return data.length;
+        }
+
+        @Override
+        public void write(byte[] data, ByteBuffer out) {
+            out.put(data);
+        }
+
+        @Override
+        public byte[] read(ByteBuffer in) {
+            byte[] bytes = new byte[in.remaining()];
+            in.get(bytes);
+            return bytes;
+        }
+    };
+
+    /**
+     * Hashes the first length bytes of a buffer, read from index 0 whatever
+     * its position. Maps that match keys by their serialized bytes hash
+     * those same bytes, so keys whose hashCode is based on identity, such
+     * as arrays, still find each other. The function is part of the
+     * MappedHashMap file format and must not change.
+     *
+     * @param bytes buffer holding the bytes, in big endian order
+     * @param length number of bytes to hash
+     * @return hash of the bytes
+     */
+    public static int hash(ByteBuffer bytes, int length) {
+        long h = length * 0x9E3779B97F4A7C15L;
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            h = Long.rotateLeft(h ^ bytes.getLong(i) * 0xC2B2AE3D27D4EB4FL,
+                    31) * 0x9E3779B97F4A7C15L;
+        }
+        for (; i < length; i++) {
+            h = (h ^ (bytes.get(i) & 0xFF)) * 0x100000001B3L;
+        }
+        // 64 bit finalizer of MurmurHash3, so every input bit reaches the
+        // low bits used for the slot
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private Serializers() {
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * SipHash-2-4, a keyed hash function. Without the 128 bit key an attacker
+ * cannot predict the hash of a string, so they cannot build a set of strings
+ * that collide, the way they can with {@code String.hashCode()}.
+ *
+ * The characters of a string are hashed as their UTF-16 code units, low
+ * byte first.
+ *
+ * @version 1.0
+ */
+public final class SipHash {
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private SipHash() {
+    }
+
+    /**
+     * Hashes the characters of s under the key (k0, k1).
+     *
+     * @param k0 first half of the key
+     * @param k1 second half of the key
+     * @param s characters to hash
+     * @return 64 bit hash of s
+     */
+    public static long hash(long k0, long k1, CharSequence s) {
+        long v0 = k0 ^ 0x736f6d6570736575L;
+        long v1 = k1 ^ 0x646f72616e646f6dL;
+        long v2 = k0 ^ 0x6c7967656e657261L;
+        long v3 = k1 ^ 0x7465646279746573L;
+        int length = s.length();
+        int fullWords = length / 4;
+        // every full word of 4 chars, then a last word holding the leftover
+        // chars and the length in bytes in its top byte
+        for (int word = 0; word <= fullWords; word++) {
+            long m;
+            int i = word * 4;
+            if (word < fullWords) {
+                m = s.charAt(i) | (long) s.charAt(i + 1) << 16
+                        | (long) s.charAt(i + 2) << 32
+                        | (long) s.charAt(i + 3) << 48;
+            } else {
+                m = (long) (length * 2) << 56;
+                for (int j = 0; i + j < length; j++) {
+                    m |= (long) s.charAt(i + j) << (16 * j);
+                }
+            }
+            v3 ^= m;
+            for (int round = 0; round < 2; round++) {
+                v0 += v1;
+                v1 = Long.rotateLeft(v1, 13) ^ v0;
+                v0 = Long.rotateLeft(v0, 32);
+                v2 += v3;
+                v3 = Long.rotateLeft(v3, 16) ^ v2;
+                v0 += v3;
+                v3 = Long.rotateLeft(v3, 21) ^ v0;
+                v2 += v1;
+                v1 = Long.rotateLeft(v1, 17) ^ v2;
+                v2 = Long.rotateLeft(v2, 32);
+            }
+            v0 ^= m;
+        }
+        v2 ^= 0xff;
+        for (int round = 0; round < 4; round++) {
+            v0 += v1;
+            v1 = Long.rotateLeft(v1, 13) ^ v0;
+            v0 = Long.rotateLeft(v0, 32);
+            v2 += v3;
+            v3 = Long.rotateLeft(v3, 16) ^ v2;
+            v0 += v3;
+            v3 = Long.rotateLeft(v3, 21) ^ v0;
+            v2 += v1;
+            v1 = Long.rotateLeft(v1, 17) ^ v2;
+            v2 = Long.rotateLeft(v2, 32);
+        }
+        return v0 ^ v1 ^ v2 ^ v3;
+    }
+}
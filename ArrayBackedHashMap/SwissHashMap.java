@@ -0,0 +1,316 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A hash map in the style of a Swiss table. Next to the keys and values it
+ * keeps one control byte per slot: the low 7 bits of the key's hash for a
+ * full slot, or a marker for an empty or deleted one. Slots are grouped 8 at
+ * a time and a group's control bytes are packed into one long, so a lookup
+ * compares all 8 against the hash fragment with a few arithmetic operations
+ * on that long (SWAR, SIMD within a register). Only slots whose fragment
+ * matches have their key compared, and a miss usually stops at the first
+ * group, having read just one long of control bytes and no keys.
+ *
+ * Probing moves from group to group by triangular steps over a power of two
+ * number of groups, so it visits every group before repeating.
+ *
+ * @version 1.0
+ */
+public class SwissHashMap<K, V> implements HashMapInterface<K, V> {
+    // slots fill up to 7/8 of the table, since probing a group at a time
+    // copes well with high load
+    public static final double LOAD_FACTOR = 0.875;
+
+    private static final int GROUP_SIZE = 8;
+    private static final int STARTING_GROUPS = 2;
+
+    private static final int EMPTY = 0x80;
+    private static final int DELETED = 0xFE;
+
+    // a byte of 1 in every lane, and the high bit of every lane
+    private static final long LSBS = 0x0101010101010101L;
+    private static final long MSBS = 0x8080808080808080L;
+
+    private K[] keys;
+    private V[] values;
+    // control bytes, 8 per long, slot i in byte i % 8 counting from the low
+    // byte
+    private long[] control;
+    private int size;
+    // empty slots that may still be filled before the table must be rebuilt
+    private int growthLeft;
+
+    /**
+     * Create a hash map with no entries.
+     */
+    public SwissHashMap() {
+        clear();
+    }
+
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        int hash = PowerOfTwoHashMap.mix(key.hashCode());
+        int index = find(key, hash);
+        if (index != -1) {
+            V old = values[index];
+            values[index] = value;
+            return old;
+        }
+        index = findInsertSlot(hash);
+        if (growthLeft == 0 && controlAt(index) == EMPTY) {
+            rebuild();
+            index = findInsertSlot(hash);
+        }
+        if (controlAt(index) == EMPTY) {
+            growthLeft--;
+        }
+        setControl(index, hash & 0x7F);
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public V remove(K key) {
+        int index = find(key);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        V old = values[index];
+        keys[index] = null;
+        values[index] = null;
+        size--;
+        // a probe only moves past a group that has no empty slot, so if this
+        // group still has one no probe can need this slot to keep going
+        if (matchEmpty(control[index / GROUP_SIZE]) != 0) {
+            setControl(index, EMPTY);
+            growthLeft++;
+        } else {
+            setControl(index, DELETED);
+        }
+        return old;
+    }
+
+    @Override
+    public V get(K key) {
+        int index = find(key);
+        if (index == -1) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return values[index];
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return find(key) != -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        int slots = STARTING_GROUPS * GROUP_SIZE;
+        keys = (K[]) new Object[slots];
+        values = (V[]) new Object[slots];
+        control = new long[STARTING_GROUPS];
+        Arrays.fill(control, EMPTY * LSBS);
+        size = 0;
+        growthLeft = (int) (slots * LOAD_FACTOR);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the table as an array of entries. Unlike
+     * {@link HashMap#toArray()} this is not the backing array, so changing
+     * the entries does not change the map.
+     *
+     * @return the table as entries, including empty spaces
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public MapEntry<K, V>[] toArray() {
+        MapEntry<K, V>[] table = new MapEntry[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                table[i] = new MapEntry<K, V>(keys[i], values[i]);
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        HashSet<K> set = new HashSet<K>();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                set.add(keys[i]);
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public List<V> values() {
+        LinkedList<V> vals = new LinkedList<V>();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                vals.add(values[i]);
+            }
+        }
+        return vals;
+    }
+
+    /**
+     * @param key
+     *            key to look for
+     * @throws IllegalArgumentException if key is null
+     * @return slot of the key, -1 if it is not in the map
+     */
+    private int find(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        return find(key, PowerOfTwoHashMap.mix(key.hashCode()));
+    }
+
+    /**
+     * walks the groups of the probe sequence, comparing keys only in slots
+     * whose control byte matches the hash fragment, and stops at the first
+     * group with an empty slot
+     *
+     * @param key
+     *            key to look for
+     * @param hash
+     *            mixed hash of key
+     * @return slot of the key, -1 if it is not in the map
+     */
+    private int find(K key, int hash) {
+        int groupMask = control.length - 1;
+        int group = (hash >>> 7) & groupMask;
+        for (int step = 1; step <= control.length; step++) {
+            long word = control[group];
+            for (long m = match(word, hash & 0x7F); m != 0; m &= m - 1) {
+                int index = group * GROUP_SIZE
+                        + Long.numberOfTrailingZeros(m) / 8;
+                if (keys[index].equals(key)) {
+                    return index;
+                }
+            }
+            if (matchEmpty(word) != 0) {
+                return -1;
+            }
+            group = (group + step) & groupMask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param hash
+     *            mixed hash of the key to insert
+     * @return first empty or deleted slot on the probe sequence
+     */
+    private int findInsertSlot(int hash) {
+        int groupMask = control.length - 1;
+        int group = (hash >>> 7) & groupMask;
+        for (int step = 1; ; step++) {
+            long m = control[group] & MSBS;
+            if (m != 0) {
+                return group * GROUP_SIZE + Long.numberOfTrailingZeros(m) / 8;
+            }
+            group = (group + step) & groupMask;
+        }
+    }
+
+    /**
+     * Sets the high bit of every byte of word that equals fragment. A byte
+     * right after a real match can be set as well because of the borrow,
+     * but only when it holds a full slot, so the key comparison weeds it
+     * out.
+     *
+     * @param word
+     *            control bytes of a group
+     * @param fragment
+     *            7 bit hash fragment to look for
+     * @return bit mask with the high bit of each matching byte set
+     */
+    private static long match(long word, int fragment) {
+        long x = word ^ (LSBS * fragment);
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    /**
+     * An empty byte (1000 0000) is the only control byte with its high bit
+     * set and bit 1 clear.
+     *
+     * @param word
+     *            control bytes of a group
+     * @return bit mask with the high bit of each empty byte set
+     */
+    private static long matchEmpty(long word) {
+        return word & (~word << 6) & MSBS;
+    }
+
+    /**
+     * @param index
+     *            slot to read
+     * @return control byte of the slot
+     */
+    private int controlAt(int index) {
+        return (int) (control[index / GROUP_SIZE] >>> (index % GROUP_SIZE * 8))
+                & 0xFF;
+    }
+
+    /**
+     * @param index
+     *            slot to write
+     * @param value
+     *            control byte to store
+     */
+    private void setControl(int index, int value) {
+        int shift = index % GROUP_SIZE * 8;
+        long word = control[index / GROUP_SIZE];
+        control[index / GROUP_SIZE] = (word & ~(0xFFL << shift))
+                | ((long) value << shift);
+    }
+
+    /**
+     * Rebuilds the table once the growth budget is used up. If deleted
+     * slots make up much of the table it is rebuilt at the same size to
+     * clear them, otherwise it doubles.
+     */
+    @SuppressWarnings("unchecked")
+    private void rebuild() {
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+        int groups = control.length;
+        if (size + 1 > keys.length * LOAD_FACTOR / 2) {
+            groups *= 2;
+        }
+        int slots = groups * GROUP_SIZE;
+        keys = (K[]) new Object[slots];
+        values = (V[]) new Object[slots];
+        control = new long[groups];
+        Arrays.fill(control, EMPTY * LSBS);
+        growthLeft = (int) (slots * LOAD_FACTOR) - size;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int hash = PowerOfTwoHashMap.mix(oldKeys[i].hashCode());
+                int index = findInsertSlot(hash);
+                setControl(index, hash & 0x7F);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,389 @@
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A size bounded cache using the W-TinyLFU policy. New entries go into a
+ * small LRU window. When the window is full its least recently used entry
+ * becomes a candidate for the main region, and a count-min sketch of recent
+ * key frequencies decides whether the candidate or the main region's victim
+ * is kept. The main region is a segmented LRU: entries enter on probation
+ * and move to the protected segment when they are hit again. A scan of keys
+ * seen once only ever churns the window, so the main region keeps its
+ * frequently used entries.
+ *
+ * The project's HashMap indexes the entries, which sit on intrusive doubly
+ * linked lists, so a hit moves a node without allocating.
+ *
+ * @version 1.0
+ */
+public class TinyLfuCache<K, V> implements HashMapInterface<K, V> {
+    // percentage of the capacity given to the window
+    private static final int WINDOW_PERCENT = 1;
+    // percentage of the main region given to the protected segment
+    private static final int PROTECTED_PERCENT = 80;
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final int maxEntries;
+    private final int maxWindow;
+    private final int maxProtected;
+
+    private final HashMap<K, Node<K, V>> index;
+    private final CountMinSketch sketch;
+    // sentinels of circular lists, least recently used first
+    private final Node<K, V> window;
+    private final Node<K, V> probation;
+    private final Node<K, V> protectedSegment;
+    private int windowSize;
+    private int protectedSize;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache holding at most maxEntries entries.
+     *
+     * @param maxEntries most entries the cache will hold
+     * @throws IllegalArgumentException if maxEntries is not positive
+     */
+    public TinyLfuCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException(
+                    "Cache bound must be positive");
+        }
+        this.maxEntries = maxEntries;
+        maxWindow = Math.max(1, maxEntries * WINDOW_PERCENT / 100);
+        maxProtected = (maxEntries - maxWindow) * PROTECTED_PERCENT / 100;
+        index = HashMap.withExpectedSize(maxEntries + 1);
+        sketch = new CountMinSketch(maxEntries);
+        window = new Node<K, V>(null, null);
+        probation = new Node<K, V>(null, null);
+        protectedSegment = new Node<K, V>(null, null);
+    }
+
+    /**
+     * Adds the key-value pair. A new key enters the window, which may push
+     * an entry into the main region and evict the less frequent of it and
+     * the main region's victim. Replacing a value counts as a use of the
+     * entry.
+     *
+     * @param key key to add into the cache
+     * @param value value to add into the cache
+     * @throws IllegalArgumentException if key or value is null
+     * @return the old value associated with key, null if there was none
+     */
+    @Override
+    public V add(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        int hash = key.hashCode();
+        sketch.increment(hash);
+        MapEntry<K, Node<K, V>> entry = index.find(key);
+        if (entry != null) {
+            Node<K, V> node = entry.getValue();
+            V old = node.value;
+            node.value = value;
+            onHit(node);
+            return old;
+        }
+        Node<K, V> node = new Node<K, V>(key, value);
+        node.hash = hash;
+        node.queue = WINDOW;
+        index.add(key, node);
+        linkLast(window, node);
+        windowSize++;
+        if (windowSize > maxWindow) {
+            Node<K, V> candidate = window.next;
+            unlink(candidate);
+            windowSize--;
+            candidate.queue = PROBATION;
+            linkLast(probation, candidate);
+            if (index.size() > maxEntries) {
+                evict(candidate);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        MapEntry<K, Node<K, V>> entry = index.find(key);
+        if (entry == null) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        Node<K, V> node = entry.getValue();
+        drop(node);
+        return node.value;
+    }
+
+    /**
+     * Gets the value associated with key and counts it as a use of the
+     * entry. Counts a hit or a miss.
+     *
+     * @param key key to search for in the cache
+     * @throws IllegalArgumentException if key is null
+     * @throws java.util.NoSuchElementException if key is not in the cache
+     * @return the value associated with key
+     */
+    @Override
+    public V get(K key) {
+        Node<K, V> node = lookup(key);
+        if (node == null) {
+            throw new NoSuchElementException("Key Does Not Exist");
+        }
+        return node.value;
+    }
+
+    /**
+     * Gets the value associated with key and counts it as a use of the
+     * entry, without throwing on a miss. Counts a hit or a miss.
+     *
+     * @param key key to search for in the cache
+     * @param defaultValue value to return if key is not in the cache
+     * @throws IllegalArgumentException if key is null
+     * @return the value associated with key, defaultValue if there is none
+     */
+    public V getOrDefault(K key, V defaultValue) {
+        Node<K, V> node = lookup(key);
+        return node == null ? defaultValue : node.value;
+    }
+
+    /**
+     * Checks whether key is cached. Does not count as a hit, a miss or a
+     * use of the entry.
+     *
+     * @param key key to search for in the cache
+     * @throws IllegalArgumentException if key is null
+     * @return whether key is in the cache
+     */
+    @Override
+    public boolean contains(K key) {
+        return index.contains(key);
+    }
+
+    /**
+     * Empties the cache and forgets every key frequency. The hit, miss and
+     * eviction counts are kept.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        index.clear();
+        sketch.clear();
+        for (Node<K, V> head : new Node[] {window, probation,
+            protectedSegment}) {
+            head.next = head;
+            head.prev = head;
+        }
+        windowSize = 0;
+        protectedSize = 0;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return number of get calls that found their key
+     */
+    public long hitCount() {
+        return hits;
+    }
+
+    /**
+     * @return number of get calls that did not find their key
+     */
+    public long missCount() {
+        return misses;
+    }
+
+    /**
+     * @return number of entries evicted to stay within the bound
+     */
+    public long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns a copy of the cached entries. Changing the entries does not
+     * change the cache.
+     *
+     * @return array of the cached entries
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public MapEntry<K, V>[] toArray() {
+        MapEntry<K, V>[] entries = new MapEntry[index.size()];
+        int count = 0;
+        for (Node<K, V> head : new Node[] {window, probation,
+            protectedSegment}) {
+            for (Node<K, V> n = head.next; n != head; n = n.next) {
+                entries[count++] = new MapEntry<K, V>(n.key, n.value, n.hash);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new HashSet<K>(index.keySet());
+    }
+
+    @Override
+    public List<V> values() {
+        LinkedList<V> vals = new LinkedList<V>();
+        for (MapEntry<K, V> entry : toArray()) {
+            vals.add(entry.getValue());
+        }
+        return vals;
+    }
+
+    /**
+     * finds key, records the access in the sketch and counts a hit or miss
+     *
+     * @param key
+     *            key to look for
+     * @throws IllegalArgumentException if key is null
+     * @return the node holding key, null if it is not cached
+     */
+    private Node<K, V> lookup(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        sketch.increment(key.hashCode());
+        MapEntry<K, Node<K, V>> entry = index.find(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        onHit(entry.getValue());
+        return entry.getValue();
+    }
+
+    /**
+     * Moves a node that was just used to the most recently used end of its
+     * segment, promoting it from probation to protected.
+     *
+     * @param node
+     *            node that was used
+     */
+    private void onHit(Node<K, V> node) {
+        unlink(node);
+        if (node.queue == WINDOW) {
+            linkLast(window, node);
+        } else if (node.queue == PROTECTED) {
+            linkLast(protectedSegment, node);
+        } else {
+            node.queue = PROTECTED;
+            linkLast(protectedSegment, node);
+            protectedSize++;
+            if (protectedSize > maxProtected) {
+                Node<K, V> demoted = protectedSegment.next;
+                unlink(demoted);
+                protectedSize--;
+                demoted.queue = PROBATION;
+                linkLast(probation, demoted);
+            }
+        }
+    }
+
+    /**
+     * Evicts whichever of the candidate and the least recently used entry
+     * on probation has been seen less often, preferring to keep the one
+     * already in the main region on a tie.
+     *
+     * @param candidate
+     *            node that just left the window for probation
+     */
+    private void evict(Node<K, V> candidate) {
+        Node<K, V> victim = probation.next;
+        if (victim == candidate && protectedSize > 0) {
+            // nothing else on probation, so compete with protected instead
+            victim = protectedSegment.next;
+        }
+        if (victim != candidate
+                && sketch.frequency(candidate.hash)
+                > sketch.frequency(victim.hash)) {
+            drop(victim);
+        } else {
+            drop(candidate);
+        }
+        evictions++;
+    }
+
+    /**
+     * removes node from its list and from the index
+     *
+     * @param node
+     *            node to remove
+     */
+    private void drop(Node<K, V> node) {
+        unlink(node);
+        if (node.queue == WINDOW) {
+            windowSize--;
+        } else if (node.queue == PROTECTED) {
+            protectedSize--;
+        }
+        index.remove(node.key);
+    }
+
+    /**
+     * @param head
+     *            sentinel of the list to add to
+     * @param node
+     *            node to add as the most recently used
+     */
+    private static <K, V> void linkLast(Node<K, V> head, Node<K, V> node) {
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+    }
+
+    /**
+     * @param node
+     *            node to take out of its list
+     */
+    private static <K, V> void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+    }
+
+    /**
+     * A cached entry on one of the segment lists. A sentinel node links to
+     * itself when its list is empty.
+     */
+    private static class Node<K, V> {
+        private final K key;
+        private V value;
+        private int hash;
+        private byte queue;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        /**
+         * @param key
+         *            key of the entry
+         * @param value
+         *            value of the entry
+         */
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+            prev = this;
+            next = this;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.NoSuchElementException;
+
+/**
+ * A max heap where every node has d children instead of two. The tree is
+ * log(d) times shallower than a binary heap, so remove moves an item down
+ * fewer levels, at the cost of comparing d children at each level.
+ *
+ * Items are stored from index 0, with the children of item k at
+ * d * k + 1 through d * k + d. The items are shifted right by d - 1 slots
+ * so every group of siblings starts on an index that is a multiple of d in
+ * the backing array. The siblings are always next to each other, so picking
+ * the biggest child reads one run of d references. The JVM does not promise
+ * where an array starts, though, so the index alignment does not line a
+ * group up with a cache line.
+ */
+public class DaryHeap<T extends Comparable<? super T>> implements
+        HeapInterface<T> {
+
+    public static final int DEFAULT_ARITY = 4;
+
+    private final int arity;
+    // empty slots in front of the root that line the sibling groups up
+    private final int pad;
+    private T[] arr;
+    private int size;
+
+    /**
+     * Creates a 4-ary heap.
+     */
+    public DaryHeap() {
+        this(DEFAULT_ARITY);
+    }
+
+    /**
+     * Creates a heap where each node has the given number of children.
+     *
+     * @throws IllegalArgumentException if arity is less than 2
+     * @param arity the number of children of each node
+     */
+    @SuppressWarnings("unchecked")
+    public DaryHeap(int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("Arity must be at least 2");
+        }
+        this.arity = arity;
+        pad = arity - 1;
+        arr = (T[]) new Comparable[pad + STARTING_SIZE];
+    }
+
+    @Override
+    public void add(T item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Item cannot be null");
+        }
+        if (pad + size == arr.length) {
+            resizeBackingArray();
+        }
+        T[] heap = arr;
+        int atLoc = size;
+        while (atLoc > 0) {
+            int parent = (atLoc - 1) / arity;
+            T parentItem = heap[pad + parent];
+            if (item.compareTo(parentItem) <= 0) {
+                break;
+            }
+            heap[pad + atLoc] = parentItem;
+            atLoc = parent;
+        }
+        heap[pad + atLoc] = item;
+        size++;
+    }
+
+    /**
+     * when called, this will create a new array that is double the size of arr
+     * copy all of arr's contents over and assign this array to arr.
+     */
+    @SuppressWarnings("unchecked")
+    private void resizeBackingArray() {
+        T[] tempArr = (T[]) new Comparable[pad + size * 2];
+        for (int i = 0; i < size; i++) {
+            tempArr[pad + i] = arr[pad + i];
+        }
+        arr = tempArr;
+    }
+
+    @Override
+    public T remove() {
+        if (size == 0) {
+            throw new NoSuchElementException("Heap is empty");
+        }
+        T obj = arr[pad];
+        size--;
+        T item = arr[pad + size];
+        arr[pad + size] = null;
+        if (size > 0) {
+            siftDown(item);
+        }
+        return obj;
+    }
+
+    /**
+     * puts item in the root's place and moves it down, swapping it with its
+     * biggest child, until no child is bigger than it
+     *
+     * @param item the item to move down from the root
+     */
+    private void siftDown(T item) {
+        T[] heap = arr;
+        int atLoc = pad;
+        int end = pad + size;
+        // stopping at the last item with children keeps the child index
+        // from overflowing on heaps near the largest array length
+        int lastParent = size < 2 ? -1 : pad + (size - 2) / arity;
+        while (atLoc <= lastParent) {
+            int firstChild = (atLoc - pad) * arity + 1 + pad;
+            int lastChild = end - firstChild < arity ? end
+                    : firstChild + arity;
+            int biggestChild = firstChild;
+            T biggest = heap[firstChild];
+            for (int i = firstChild + 1; i < lastChild; i++) {
+                if (heap[i].compareTo(biggest) > 0) {
+                    biggestChild = i;
+                    biggest = heap[i];
+                }
+            }
+            if (item.compareTo(biggest) >= 0) {
+                break;
+            }
+            heap[atLoc] = biggest;
+            atLoc = biggestChild;
+        }
+        heap[atLoc] = item;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        arr = (T[]) new Comparable[pad + STARTING_SIZE];
+        size = 0;
+    }
+
+    /**
+     * Returns the backing array. The root is at index arity - 1 and the
+     * slots in front of it are always empty.
+     *
+     * @return the backing array
+     */
+    @Override
+    public Comparable[] getBackingArray() {
+        return arr;
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.Random;
+
+/**
+ * Rough wall-clock benchmark of the binary MaxHeap against DaryHeap with 4
+ * and 8 children per node. Run with the heap sizes to try, for example
+ * {@code java -Xmx8g HeapBenchmark 1000000 10000000 100000000}; with no
+ * arguments it tries 1M and 10M items. Each heap runs a warm up pass before
+ * the timed pass, so the numbers are for compiled code, but they are still
+ * only a guide.
+ *
+ * For each size the heap is filled, then goes through a mix of one remove
+ * and one add per item, then is emptied.
+ */
+public class HeapBenchmark {
+    private static final int[] ARITIES = {2, 4, 8};
+
+    /**
+     * Runs the benchmark for each size given.
+     *
+     * @param args the numbers of items to fill the heaps with
+     */
+    public static void main(String[] args) {
+        int[] sizes = {1000000, 10000000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println("items\theap\tadd ms\tmix ms\tremove ms");
+        for (int count : sizes) {
+            Integer[] items = new Integer[count * 2];
+            Random random = new Random(42);
+            for (int i = 0; i < items.length; i++) {
+                items[i] = random.nextInt();
+            }
+            run(count, "MaxHeap", new MaxHeap<Integer>(), items);
+            for (int arity : ARITIES) {
+                run(count, arity + "-ary", new DaryHeap<Integer>(arity),
+                        items);
+            }
+        }
+    }
+
+    /**
+     * Runs a warm up pass and then a timed pass on one heap.
+     *
+     * @param count
+     *            number of items to fill the heap with
+     * @param name
+     *            name of the heap to print
+     * @param heap
+     *            heap to run against, cleared before each pass
+     * @param items
+     *            the first count fill the heap, the rest are added in the
+     *            mix
+     */
+    private static void run(int count, String name,
+            HeapInterface<Integer> heap, Integer[] items) {
+        long[] times = null;
+        for (int pass = 0; pass < 2; pass++) {
+            heap.clear();
+            times = timePass(count, heap, items);
+        }
+        System.out.println(count + "\t" + name + "\t" + times[0] + "\t"
+                + times[1] + "\t" + times[2]);
+    }
+
+    /**
+     * @param count
+     *            number of items to fill the heap with
+     * @param heap
+     *            empty heap to run against
+     * @param items
+     *            the first count fill the heap, the rest are added in the
+     *            mix
+     * @return milliseconds taken to fill, to run the mix and to empty
+     */
+    private static long[] timePass(int count, HeapInterface<Integer> heap,
+            Integer[] items) {
+        long[] times = new long[3];
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            heap.add(items[i]);
+        }
+        times[0] = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int i = count; i < items.length; i++) {
+            heap.remove();
+            heap.add(items[i]);
+        }
+        times[1] = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        while (!heap.isEmpty()) {
+            heap.remove();
+        }
+        times[2] = System.nanoTime() - begin;
+        for (int i = 0; i < times.length; i++) {
+            times[i] /= 1000000;
+        }
+        return times;
+    }
+}
@@ -1,3 +1,4 @@
+import java.util.Collection;
 import java.util.NoSuchElementException;
 
 public class MaxHeap<T extends Comparable<? super T>> implements
@@ -17,6 +18,67 @@ public class MaxHeap<T extends Comparable<? super T>> implements
         size = 1;
     }
 
+    /**
+     * Creates a MaxHeap holding every item of a collection. The items are
+     * copied into a backing array of the right size and heapified bottom up,
+     * which is O(n) rather than the O(n log n) of adding them one at a time.
+     *
+     * @throws IllegalArgumentException if items is null or holds a null
+     * @param items the items to be put in the heap
+     */
+    public MaxHeap(Collection<? extends T> items) {
+        this();
+        addAll(items);
+    }
+
+    /**
+     * Adds every item of a collection. When the batch is large next to the
+     * heap, the items are appended and the whole heap is heapified bottom up
+     * in O(n + m); a small batch is added one item at a time in
+     * O(m log(n + m)).
+     *
+     * @throws IllegalArgumentException if items is null or holds a null,
+     * in which case the heap is left as it was
+     * @param items the items to be added to the heap
+     */
+    @SuppressWarnings("unchecked")
+    public void addAll(Collection<? extends T> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("Collection cannot be null");
+        }
+        for (T item : items) {
+            if (item == null) {
+                throw new IllegalArgumentException("Item cannot be null");
+            }
+        }
+        int total = size - 1 + items.size();
+        // heapify touches every item about twice, adding one at a time
+        // climbs up to log(total) levels per new item
+        if ((long) items.size() * (32 - Integer.numberOfLeadingZeros(total))
+                < 2L * total) {
+            for (T item : items) {
+                add(item);
+            }
+            return;
+        }
+        // slot 0 is unused, and the last slot is left empty so the next add
+        // does not have to resize
+        T[] tempArr = (T[]) new Comparable[Math.max(STARTING_SIZE,
+                total + 2)];
+        for (int i = 1; i < size; i++) {
+            tempArr[i] = arr[i];
+        }
+        int last = size;
+        for (T item : items) {
+            tempArr[last++] = item;
+        }
+        arr = tempArr;
+        size = last;
+        for (int i = (size - 1) / 2; i > 0; i--) {
+            siftDown(i);
+        }
+    }
+
     @Override
     public void add(T item) {
         if (item == null) {
@@ -63,24 +125,31 @@ public class MaxHeap<T extends Comparable<? super T>> implements
         arr[1] = arr[size - 1];
         arr[size - 1] = null;
         size--;
-        int atLoc = 1;
-        for (int i = 2; i < size; i = i * 2) {
-            int biggerChild;
-            if (arr[i + 1] != null) {
-                biggerChild = arr[i].compareTo(arr[i + 1]) > 0 ? i : i + 1;
-            } else {
-                biggerChild = i;
+        siftDown(1);
+        return obj;
+    }
+
+    /**
+     * moves the item at index down, swapping it with its bigger child, until
+     * neither child is bigger than it
+     *
+     * @param index the index of the item to move down
+     */
+    private void siftDown(int index) {
+        T item = arr[index];
+        int atLoc = index;
+        for (int i = atLoc * 2; i < size; i = atLoc * 2) {
+            int biggerChild = i;
+            if (i + 1 < size && arr[i].compareTo(arr[i + 1]) < 0) {
+                biggerChild = i + 1;
             }
-            if (arr[atLoc].compareTo(arr[biggerChild]) < 0) {
-                T temp = arr[atLoc];
-                arr[atLoc] = arr[biggerChild];
-                arr[biggerChild] = temp;
-                atLoc = biggerChild;
-            } else {
-                i = size;
+            if (item.compareTo(arr[biggerChild]) >= 0) {
+                break;
             }
+            arr[atLoc] = arr[biggerChild];
+            atLoc = biggerChild;
         }
-        return obj;
+        arr[atLoc] = item;
     }
 
     @Override
@@ -1,3 +1,5 @@
+import java.util.Collection;
+
 public class MaxPriorityQueue<T extends Comparable<? super T>> implements
         PriorityQueueInterface<T> {
 
@@ -12,6 +14,27 @@ public class MaxPriorityQueue<T extends Comparable<? super T>> implements
         heap = new MaxHeap<T>();
     }
 
+    /**
+     * Creates a MaxPriorityQueue holding every item of a collection, built
+     * in O(n).
+     *
+     * @throws IllegalArgumentException if items is null or holds a null
+     * @param items the items to be put in the priority queue
+     */
+    public MaxPriorityQueue(Collection<? extends T> items) {
+        heap = new MaxHeap<T>(items);
+    }
+
+    /**
+     * Adds every item of a collection.
+     *
+     * @throws IllegalArgumentException if items is null or holds a null
+     * @param items the items to be added
+     */
+    public void addAll(Collection<? extends T> items) {
+        heap.addAll(items);
+    }
+
     @Override
     public void enqueue(T item) {
         heap.add(item);